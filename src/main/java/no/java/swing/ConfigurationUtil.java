@@ -19,6 +19,12 @@ import no.java.swing.resource.ResourceMap;
 import org.apache.commons.lang.Validate;
 
 import javax.swing.*;
+import java.awt.*;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * Utility methods for configuring
@@ -27,6 +33,12 @@ import javax.swing.*;
  * @author <a href="mailto:harald@escenic.com">Harald Kuhr</a>
  */
 public class ConfigurationUtil {
+    private static final String NAME_SUFFIX = ".name";
+    private static final String ACCELERATOR_SUFFIX = ".accelerator";
+    private static final String DESCRIPTION_SUFFIX = ".description";
+    private static final String ICON_SUFFIX = ".icon";
+
+    private static final Map<ResourceMap, ActionIndex> ACTION_INDEXES = new WeakHashMap<ResourceMap, ActionIndex>();
 
     private ConfigurationUtil() {
     }
@@ -44,36 +56,105 @@ public class ConfigurationUtil {
         Validate.notEmpty(actionId, "ActionId can not be empty");
         Validate.notNull(resourceMap, "ResourceBundle can not be null");
 
-        String textWithMnemonicKey = actionId + ".name";
-        String acceleratorKey = actionId + ".accelerator";
-        String descriptionKey = actionId + ".description";
-        String iconKey = actionId + ".icon";
+        configureName(action, actionId, resourceMap);
+        configureAccelerator(action, actionId, resourceMap);
+        configureDescription(action, actionId, resourceMap);
+        configureIcon(action, actionId, resourceMap);
+    }
 
+    static void configureName(Action action, String actionId, ResourceMap resourceMap) {
+        String textWithMnemonicKey = actionId + NAME_SUFFIX;
         if (resourceMap.containsKey(textWithMnemonicKey)) {
             String textWithMnemonicString = resourceMap.getString(textWithMnemonicKey).trim();
             if (!textWithMnemonicString.isEmpty()) {
-                TextWithMnemonic textWithMnemonic = new TextWithMnemonic(textWithMnemonicString);
+                TextWithMnemonic textWithMnemonic = TextWithMnemonic.valueOf(textWithMnemonicString);
                 configureAction(action, textWithMnemonic);
             }
         }
+    }
 
+    static void configureAccelerator(Action action, String actionId, ResourceMap resourceMap) {
+        String acceleratorKey = actionId + ACCELERATOR_SUFFIX;
         if (resourceMap.containsKey(acceleratorKey)) {
             KeyStroke keyStroke = resourceMap.getKeyStroke(acceleratorKey);
             action.putValue(Action.ACCELERATOR_KEY, keyStroke);
         }
+    }
 
+    static void configureDescription(Action action, String actionId, ResourceMap resourceMap) {
+        String descriptionKey = actionId + DESCRIPTION_SUFFIX;
         if (resourceMap.containsKey(descriptionKey)) {
             String descriptionValue = resourceMap.getString(descriptionKey).trim();
             if (!descriptionValue.isEmpty()) {
                 action.putValue(Action.SHORT_DESCRIPTION, descriptionValue);
             }
         }
+    }
 
+    static void configureIcon(Action action, String actionId, ResourceMap resourceMap) {
+        String iconKey = actionId + ICON_SUFFIX;
         if (resourceMap.containsKey(iconKey)) {
             Icon icon = resourceMap.getIcon(iconKey);
             action.putValue(Action.SMALL_ICON, icon);
         }
+    }
 
+    /**
+     * Configures many actions at once, like {@link #configureAction(Action, String, ResourceMap)} with the map keys as
+     * action ids. The resource keys are grouped by action id once per resource map, so each action is configured
+     * with a single lookup in the index instead of building and probing keys for every action.
+     * <p/>
+     * Icons are attached lazily: the action gets a placeholder icon which reads the real icon the first time it is
+     * displayed, and then replaces itself with it.
+     *
+     * @param actions     the actions to configure, by action id. May not be {@code null}.
+     * @param resourceMap resource map to look up values in. May not be {@code null}.
+     */
+    public static void configureActions(Map<String, ? extends Action> actions, ResourceMap resourceMap) {
+        Validate.notNull(actions, "Actions can not be null");
+        Validate.notNull(resourceMap, "ResourceMap can not be null");
+        ActionIndex index = getActionIndex(resourceMap);
+        for (Map.Entry<String, ? extends Action> entry : actions.entrySet()) {
+            ActionKeys keys = index.get(entry.getKey());
+            if (keys == null) {
+                continue;
+            }
+            Action action = entry.getValue();
+            if (keys.name != null) {
+                String textWithMnemonicString = resourceMap.getString(keys.name).trim();
+                if (!textWithMnemonicString.isEmpty()) {
+                    configureAction(action, TextWithMnemonic.valueOf(textWithMnemonicString));
+                }
+            }
+            if (keys.accelerator != null) {
+                action.putValue(Action.ACCELERATOR_KEY, resourceMap.getKeyStroke(keys.accelerator));
+            }
+            if (keys.description != null) {
+                String descriptionValue = resourceMap.getString(keys.description).trim();
+                if (!descriptionValue.isEmpty()) {
+                    action.putValue(Action.SHORT_DESCRIPTION, descriptionValue);
+                }
+            }
+            if (keys.icon != null) {
+                action.putValue(Action.SMALL_ICON, new LazyIcon(action, resourceMap, keys.icon));
+            }
+        }
+    }
+
+    /**
+     * Returns the action keys of the resource map grouped by action id. The index is rebuilt when the key set of the
+     * map changes, e.g. after a reload.
+     */
+    private static ActionIndex getActionIndex(ResourceMap resourceMap) {
+        Set<String> keySet = resourceMap.keySet();
+        synchronized (ACTION_INDEXES) {
+            ActionIndex index = ACTION_INDEXES.get(resourceMap);
+            if (index == null || index.source.get() != keySet) {
+                index = new ActionIndex(keySet);
+                ACTION_INDEXES.put(resourceMap, index);
+            }
+            return index;
+        }
     }
 
     /**
@@ -91,4 +172,102 @@ public class ConfigurationUtil {
             action.putValue(Action.DISPLAYED_MNEMONIC_INDEX_KEY, textWithMnemonic.getMnemonicIndex());
         }
     }
+
+    private static class ActionIndex {
+        // The key set may refer to its resource map, which must stay weakly reachable from ACTION_INDEXES
+        private final WeakReference<Set<String>> source;
+        private final Map<String, ActionKeys> keysByActionId = new HashMap<String, ActionKeys>();
+
+        private ActionIndex(Set<String> source) {
+            this.source = new WeakReference<Set<String>>(source);
+            for (String key : source) {
+                int dot = key.lastIndexOf('.');
+                if (dot <= 0) {
+                    continue;
+                }
+                String suffix = key.substring(dot);
+                if (suffix.equals(NAME_SUFFIX)) {
+                    getKeys(key, dot).name = key;
+                } else if (suffix.equals(ACCELERATOR_SUFFIX)) {
+                    getKeys(key, dot).accelerator = key;
+                } else if (suffix.equals(DESCRIPTION_SUFFIX)) {
+                    getKeys(key, dot).description = key;
+                } else if (suffix.equals(ICON_SUFFIX)) {
+                    getKeys(key, dot).icon = key;
+                }
+            }
+        }
+
+        private ActionKeys get(String actionId) {
+            return keysByActionId.get(actionId);
+        }
+
+        private ActionKeys getKeys(String key, int dot) {
+            String actionId = key.substring(0, dot);
+            ActionKeys keys = keysByActionId.get(actionId);
+            if (keys == null) {
+                keys = new ActionKeys();
+                keysByActionId.put(actionId, keys);
+            }
+            return keys;
+        }
+    }
+
+    private static class ActionKeys {
+        private String name;
+        private String accelerator;
+        private String description;
+        private String icon;
+    }
+
+    /**
+     * Icon which reads the real icon from the resource map the first time it's displayed, and then puts the real icon
+     * in the action, so that components show it directly from then on.
+     */
+    private static class LazyIcon implements Icon {
+        private final Action action;
+        private final ResourceMap resourceMap;
+        private final String key;
+        private Icon icon;
+        private boolean resolved;
+
+        private LazyIcon(Action action, ResourceMap resourceMap, String key) {
+            this.action = action;
+            this.resourceMap = resourceMap;
+            this.key = key;
+        }
+
+        private Icon getIcon() {
+            if (!resolved) {
+                resolved = true;
+                icon = resourceMap.getIcon(key);
+                // Not while painting or laying out, replacing the icon revalidates the components using it
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (action.getValue(Action.SMALL_ICON) == LazyIcon.this) {
+                            action.putValue(Action.SMALL_ICON, icon);
+                        }
+                    }
+                });
+            }
+            return icon;
+        }
+
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            Icon delegate = getIcon();
+            if (delegate != null) {
+                delegate.paintIcon(c, g, x, y);
+            }
+        }
+
+        public int getIconWidth() {
+            Icon delegate = getIcon();
+            return delegate != null ? delegate.getIconWidth() : 0;
+        }
+
+        public int getIconHeight() {
+            Icon delegate = getIcon();
+            return delegate != null ? delegate.getIconHeight() : 0;
+        }
+    }
 }
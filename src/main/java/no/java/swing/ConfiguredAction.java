@@ -16,6 +16,7 @@
 package no.java.swing;
 
 import no.java.swing.resource.ResourceMap;
+import org.apache.commons.lang.Validate;
 
 import javax.swing.AbstractAction;
 import java.util.ResourceBundle;
@@ -34,6 +35,12 @@ public abstract class ConfiguredAction extends AbstractAction {
 
     public static final String EXECUTING = "executing";
 
+    private String basename;
+    private ResourceMap resourceMap;
+    private boolean nameResolved;
+    private boolean iconResolved;
+    private boolean acceleratorResolved;
+    private boolean descriptionResolved;
 
     /**
      * Creates and configures a new action using the provided resource map.
@@ -43,6 +50,73 @@ public abstract class ConfiguredAction extends AbstractAction {
      * @throws IllegalArgumentException if pBaseName or pResourceMap == {@code null}.
      */
     protected ConfiguredAction(final String basename, final ResourceMap resourceMap) {
-        ConfigurationUtil.configureAction(this, basename, resourceMap);
+        this(basename, resourceMap, false);
+    }
+
+    /**
+     * Creates a new action using the provided resource map, optionally configuring it lazily.
+     * <p/>
+     * A lazy action reads its name and mnemonic, icon, accelerator and description from the resource map the first
+     * time each of them is asked for through {@link #getValue(String)}, and stores them with {@link #putValue(String,
+     * Object)}, so that property change listeners are notified as usual. Actions only shown in rarely used menus then
+     * never decode their icons.
+     *
+     * @param basename    base name used for resource map lookups. May not be {@code null}.
+     * @param resourceMap resource map used to look up values. May not be {@code null}.
+     * @param lazy        {@code true} to look up values on first access.
+     * @throws IllegalArgumentException if pBaseName or pResourceMap == {@code null}.
+     */
+    protected ConfiguredAction(final String basename, final ResourceMap resourceMap, final boolean lazy) {
+        if (lazy) {
+            Validate.notEmpty(basename, "ActionId can not be empty");
+            Validate.notNull(resourceMap, "ResourceBundle can not be null");
+            this.basename = basename;
+            this.resourceMap = resourceMap;
+        } else {
+            ConfigurationUtil.configureAction(this, basename, resourceMap);
+            nameResolved = iconResolved = acceleratorResolved = descriptionResolved = true;
+        }
+    }
+
+    @Override
+    public Object getValue(final String key) {
+        if (!nameResolved && (NAME.equals(key) || MNEMONIC_KEY.equals(key) || DISPLAYED_MNEMONIC_INDEX_KEY.equals(key))) {
+            nameResolved = true;
+            ConfigurationUtil.configureName(this, basename, resourceMap);
+        } else if (!iconResolved && SMALL_ICON.equals(key)) {
+            iconResolved = true;
+            ConfigurationUtil.configureIcon(this, basename, resourceMap);
+        } else if (!acceleratorResolved && ACCELERATOR_KEY.equals(key)) {
+            acceleratorResolved = true;
+            ConfigurationUtil.configureAccelerator(this, basename, resourceMap);
+        } else if (!descriptionResolved && SHORT_DESCRIPTION.equals(key)) {
+            descriptionResolved = true;
+            ConfigurationUtil.configureDescription(this, basename, resourceMap);
+        }
+        return super.getValue(key);
+    }
+
+    @Override
+    public void putValue(final String key, final Object newValue) {
+        // A value set explicitly replaces the resource value, even if that hasn't been read yet
+        if (NAME.equals(key)) {
+            nameResolved = true;
+        } else if (SMALL_ICON.equals(key)) {
+            iconResolved = true;
+        } else if (ACCELERATOR_KEY.equals(key)) {
+            acceleratorResolved = true;
+        } else if (SHORT_DESCRIPTION.equals(key)) {
+            descriptionResolved = true;
+        }
+        super.putValue(key, newValue);
+    }
+
+    @Override
+    public Object[] getKeys() {
+        getValue(NAME);
+        getValue(SMALL_ICON);
+        getValue(ACCELERATOR_KEY);
+        getValue(SHORT_DESCRIPTION);
+        return super.getKeys();
     }
 }
@@ -16,42 +16,100 @@
 package no.java.swing;
 
 
+import org.apache.commons.lang.ObjectUtils;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.awt.event.KeyEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.List;
 
 /**
  * @author <a href="mailto:yngvars@gmail.com">Yngvar S&oslash;rensen</a>
  */
 public class DelegatingAction extends AbstractAction {
 
-    private static final Set<DelegatingAction> INSTANCES = new CopyOnWriteArraySet<DelegatingAction>();
-    private static Component focusOwner;
+    // Actions without a context, and actions by the window of their context, grouped by action key. The actions are
+    // weakly referenced, and an action is removed from its window's group when its context is no longer displayable.
+    private static final Map<String, Set<ActionReference>> GLOBAL_ACTIONS = new HashMap<String, Set<ActionReference>>();
+    private static final Map<Window, Map<String, Set<ActionReference>>> WINDOW_ACTIONS = new WeakHashMap<Window, Map<String, Set<ActionReference>>>();
+    private static final ReferenceQueue<DelegatingAction> COLLECTED_ACTIONS = new ReferenceQueue<DelegatingAction>();
+    private static WeakReference<Component> focusOwner = new WeakReference<Component>(null);
+    private static boolean updatePending;
 
     static {
         SwingUtilities.invokeLater(
                 new Runnable() {
                     public void run() {
-                        KeyboardFocusManager.getCurrentKeyboardFocusManager().addPropertyChangeListener(
-                                "permanentFocusOwner",
-                                new FocusedOwnerListener()
-                        );
+                        FocusedOwnerListener listener = new FocusedOwnerListener();
+                        KeyboardFocusManager focusManager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
+                        focusManager.addPropertyChangeListener("permanentFocusOwner", listener);
+                        focusManager.addKeyEventDispatcher(listener);
                     }
                 }
         );
     }
 
+    /**
+     * Updates the actions without a context and the actions in the focused window. The ancestors of the focus owner
+     * are walked once, collecting the first action found for each action key.
+     */
     private static void updateDelegates() {
-        Window windfocusOwnersWindow = focusOwner == null ? null : getWindow(focusOwner);
-        for (DelegatingAction action : INSTANCES) {
-            if (action.context == null || getWindow(action.context) == windfocusOwnersWindow) {
-                action.setDelegate(findDelegate(action.actionKey, focusOwner));
+        Component focusOwner = DelegatingAction.focusOwner.get();
+        Window focusOwnersWindow = focusOwner == null ? null : getWindow(focusOwner);
+        Map<String, Set<ActionReference>> windowActions;
+        Set<String> actionKeys;
+        synchronized (WINDOW_ACTIONS) {
+            removeCollectedActions();
+            windowActions = focusOwnersWindow == null ? null : WINDOW_ACTIONS.get(focusOwnersWindow);
+            actionKeys = new HashSet<String>(GLOBAL_ACTIONS.keySet());
+            if (windowActions != null) {
+                actionKeys.addAll(windowActions.keySet());
+            }
+        }
+        Map<String, Action> delegates = findDelegates(actionKeys, focusOwner);
+        setDelegates(GLOBAL_ACTIONS, delegates);
+        if (windowActions != null) {
+            setDelegates(windowActions, delegates);
+        }
+    }
+
+    /**
+     * Runs a delegate update queued by a focus change now, as key events typed ahead during a focus change may be
+     * dispatched before it, and must reach the delegate of the new focus owner. This fires property change events, so
+     * it is only run before events are dispatched, never from a getter.
+     */
+    private static void updatePendingDelegates() {
+        if (updatePending && SwingUtilities.isEventDispatchThread()) {
+            updatePending = false;
+            updateDelegates();
+        }
+    }
+
+    private static void setDelegates(Map<String, Set<ActionReference>> actions, Map<String, Action> delegates) {
+        List<DelegatingAction> snapshot = new ArrayList<DelegatingAction>();
+        synchronized (WINDOW_ACTIONS) {
+            for (Set<ActionReference> keyActions : actions.values()) {
+                for (ActionReference reference : keyActions) {
+                    DelegatingAction action = reference.get();
+                    if (action != null) {
+                        snapshot.add(action);
+                    }
+                }
+            }
+        }
+        for (DelegatingAction action : snapshot) {
+            Action delegate = delegates.get(action.actionKey);
+            if (delegate != null || action.delegate != null) {
+                action.setDelegate(delegate);
             }
         }
     }
@@ -60,14 +118,112 @@ public class DelegatingAction extends AbstractAction {
         return (Window)(component instanceof Window ? component : SwingUtilities.getWindowAncestor(component));
     }
 
-    private static Action findDelegate(final Object actionKey, final Component component) {
-        if (component instanceof JComponent) {
-            Action delegate = ((JComponent)component).getActionMap().get(actionKey);
-            if (delegate != null) {
-                return delegate;
+    /**
+     * Returns the action each key maps to in the action map of the component or its closest ancestor. Action maps
+     * shared by several components on the way, like the maps installed by the look and feel, are only searched once.
+     */
+    private static Map<String, Action> findDelegates(final Set<String> actionKeys, final Component component) {
+        Map<String, Action> delegates = new HashMap<String, Action>();
+        Set<ActionMap> searched = Collections.newSetFromMap(new IdentityHashMap<ActionMap, Boolean>());
+        for (Component c = component; c != null && delegates.size() < actionKeys.size(); c = c.getParent()) {
+            if (c instanceof JComponent) {
+                // Keys of a map searched before were found in an earlier, closer component already
+                for (ActionMap map = ((JComponent) c).getActionMap(); map != null && searched.add(map); map = map.getParent()) {
+                    Object[] keys = map.keys();
+                    if (keys == null) {
+                        continue;
+                    }
+                    for (Object key : keys) {
+                        if (actionKeys.contains(key) && !delegates.containsKey(key)) {
+                            Action delegate = map.get(key);
+                            if (delegate != null) {
+                                delegates.put((String) key, delegate);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return delegates;
+    }
+
+    private static void index(final DelegatingAction action) {
+        synchronized (WINDOW_ACTIONS) {
+            removeCollectedActions();
+            Map<String, Set<ActionReference>> actions;
+            if (action.context == null) {
+                actions = GLOBAL_ACTIONS;
+            } else if (action.window != null) {
+                actions = WINDOW_ACTIONS.get(action.window);
+                if (actions == null) {
+                    actions = new HashMap<String, Set<ActionReference>>();
+                    WINDOW_ACTIONS.put(action.window, actions);
+                }
+            } else {
+                // not shown in a window, so it can't be delegating either
+                return;
+            }
+            Set<ActionReference> keyActions = actions.get(action.actionKey);
+            if (keyActions == null) {
+                keyActions = new HashSet<ActionReference>();
+                actions.put(action.actionKey, keyActions);
+            }
+            action.reference = new ActionReference(action, actions);
+            keyActions.add(action.reference);
+        }
+    }
+
+    private static void unindex(final DelegatingAction action) {
+        synchronized (WINDOW_ACTIONS) {
+            if (action.reference != null) {
+                remove(action.reference);
+                action.reference.clear();
+                action.reference = null;
+            }
+        }
+    }
+
+    private static void removeCollectedActions() {
+        Reference<? extends DelegatingAction> reference;
+        while ((reference = COLLECTED_ACTIONS.poll()) != null) {
+            remove((ActionReference) reference);
+        }
+    }
+
+    private static void remove(final ActionReference reference) {
+        Set<ActionReference> keyActions = reference.group.get(reference.actionKey);
+        if (keyActions != null && keyActions.remove(reference) && keyActions.isEmpty()) {
+            reference.group.remove(reference.actionKey);
+            if (reference.group.isEmpty() && reference.group != GLOBAL_ACTIONS) {
+                // Empty groups are equal, so find this one by identity
+                for (Iterator<Map<String, Set<ActionReference>>> iterator = WINDOW_ACTIONS.values().iterator(); iterator.hasNext();) {
+                    if (iterator.next() == reference.group) {
+                        iterator.remove();
+                        break;
+                    }
+                }
             }
         }
-        return component == null ? null : findDelegate(actionKey, component.getParent());
+    }
+
+    /**
+     * Returns {@code true} if any actions without a context are indexed for the action key.
+     */
+    static boolean hasGlobalActions(final String actionKey) {
+        synchronized (WINDOW_ACTIONS) {
+            removeCollectedActions();
+            return GLOBAL_ACTIONS.containsKey(actionKey);
+        }
+    }
+
+    /**
+     * Returns {@code true} if any actions are indexed for the window.
+     */
+    static boolean hasWindowActions(final Window window) {
+        synchronized (WINDOW_ACTIONS) {
+            removeCollectedActions();
+            return WINDOW_ACTIONS.containsKey(window);
+        }
     }
 
     private final Map<String, Object> defaults;
@@ -75,6 +231,8 @@ public class DelegatingAction extends AbstractAction {
     private Action delegate;
     private PropertyChangeListener delegateListener;
     private Component context;
+    private Window window;
+    private ActionReference reference;
 
     public DelegatingAction(final String actionKey, final Component context) {
         this.actionKey = actionKey;
@@ -94,7 +252,36 @@ public class DelegatingAction extends AbstractAction {
             }
         };
         setEnabled(false);
-        INSTANCES.add(this);
+        if (context != null) {
+            window = getContextWindow();
+            // Move the action in the index when the context is added to another window, and release it when the window
+            // is disposed
+            context.addHierarchyListener(new HierarchyListener() {
+                public void hierarchyChanged(final HierarchyEvent event) {
+                    if ((event.getChangeFlags() & (HierarchyEvent.PARENT_CHANGED | HierarchyEvent.DISPLAYABILITY_CHANGED)) != 0) {
+                        updateWindow();
+                    }
+                }
+            });
+        }
+        index(this);
+    }
+
+    private void updateWindow() {
+        Window newWindow = getContextWindow();
+        if (newWindow != window) {
+            unindex(this);
+            window = newWindow;
+            index(this);
+            if (newWindow == null) {
+                // Stop listening to the delegate, which may be shared and outlive the window
+                setDelegate(null);
+            }
+        }
+    }
+
+    private Window getContextWindow() {
+        return context.isDisplayable() ? getWindow(context) : null;
     }
 
     public Action getDelegate() {
@@ -102,6 +289,9 @@ public class DelegatingAction extends AbstractAction {
     }
 
     public void setDelegate(final Action delegate) {
+        if (delegate == this.delegate) {
+            return;
+        }
         if (this.delegate != null) {
             this.delegate.removePropertyChangeListener(delegateListener);
         }
@@ -121,28 +311,61 @@ public class DelegatingAction extends AbstractAction {
         for (String key : keys) {
             Object defaultValue = defaults.get(key);
             Object delegateValue = delegate == null ? null : delegate.getValue(key);
-            putValue(key, delegateValue == null ? defaultValue : delegateValue);
+            Object newValue = delegateValue == null ? defaultValue : delegateValue;
+            // putValue fires an event even when a null value stays null
+            if (!ObjectUtils.equals(getValue(key), newValue)) {
+                putValue(key, newValue);
+            }
         }
     }
 
     @Override
     public void actionPerformed(final ActionEvent actionEvent) {
+        updatePendingDelegates();
         if (delegate != null) {
-            actionEvent.setSource(focusOwner);
+            actionEvent.setSource(focusOwner.get());
             delegate.actionPerformed(actionEvent);
         }
     }
 
-    private static class FocusedOwnerListener implements PropertyChangeListener {
+    /**
+     * Updates the delegates once all pending events have been handled. A click often moves the focus several times,
+     * e.g. through a popup or a temporary owner, and only the final focus owner matters. Key events dispatched before
+     * that, which may trigger key bindings that check whether an action is enabled, and performed actions run the
+     * update themselves.
+     */
+    static class FocusedOwnerListener implements PropertyChangeListener, KeyEventDispatcher, Runnable {
 
         public void propertyChange(final PropertyChangeEvent event) {
             final Component newFocusOwner = (Component)event.getNewValue();
-            if (newFocusOwner != null && focusOwner != newFocusOwner) {
-                focusOwner = newFocusOwner;
-                updateDelegates();
+            if (newFocusOwner != null && focusOwner.get() != newFocusOwner) {
+                focusOwner = new WeakReference<Component>(newFocusOwner);
+                if (!updatePending) {
+                    updatePending = true;
+                    SwingUtilities.invokeLater(this);
+                }
             }
         }
 
+        public void run() {
+            updatePendingDelegates();
+        }
+
+        public boolean dispatchKeyEvent(final KeyEvent event) {
+            updatePendingDelegates();
+            return false;
+        }
+
     }
 
+    private static class ActionReference extends WeakReference<DelegatingAction> {
+        private final String actionKey;
+        private final Map<String, Set<ActionReference>> group;
+
+        private ActionReference(final DelegatingAction action, final Map<String, Set<ActionReference>> group) {
+            super(action, COLLECTED_ACTIONS);
+            this.actionKey = action.actionKey;
+            this.group = group;
+        }
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing;
+
+/**
+ * Supplies precomputed match offsets to a {@link HighlightingCellRenderer}, typically implemented by the table or list
+ * model, or by the row filter that already found the matches.
+ *
+ * @see HighlightingCellRenderer#HIGHLIGHT_SPANS_PROPERTY
+ */
+public interface HighlightSpanProvider {
+
+    /**
+     * Returns the spans to highlight in a cell as pairs of start (inclusive) and end (exclusive) offsets into the
+     * cell text, for example <code>{0, 3, 7, 9}</code>.
+     *
+     * @param row    model row index of the cell, or the row index for trees.
+     * @param column model column index of the cell, always 0 for lists and trees.
+     * @return the highlight spans, or {@code null} if nothing should be highlighted.
+     */
+    int[] getHighlightSpans(int row, int column);
+}
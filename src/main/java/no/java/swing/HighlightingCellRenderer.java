@@ -22,29 +22,55 @@ import org.apache.commons.lang.Validate;
 
 import javax.swing.*;
 import javax.swing.border.Border;
+import javax.swing.border.LineBorder;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableCellRenderer;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.DefaultHighlighter;
-import javax.swing.text.Highlighter;
+import javax.swing.tree.DefaultTreeCellRenderer;
+import javax.swing.tree.TreeCellRenderer;
 import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-// todo: override and optimize in the same way as the default cell renderer
-// todo: implement ListCellRenderer, TreeCellRenderer
-
 /**
+ * Cell renderer for tables, lists and trees that highlights parts of the cell text. The highlighted spans are taken
+ * from the first {@link HighlightSpanProvider} found in the {@link #HIGHLIGHT_SPANS_PROPERTY} client property, the
+ * model or the table's row filter. Otherwise the text matching the pattern in the {@link #HIGHLIGHT_PATTERN_PROPERTY}
+ * client property is highlighted.
+ * <p/>
+ * All cell types share one rendering path: the text is painted from a {@link TextLayout} cached per text and font,
+ * with the highlights filled from the layout's highlight shapes, so neither HTML views nor a text component are
+ * involved. Like {@link DefaultTableCellRenderer} the renderer skips revalidation, repaints and most property change
+ * events.
+ *
  * @author <a href="mailto:yngvars@gmail.no">Yngvar S&oslash;rensen</a>
  */
-public class HighlightingCellRenderer extends SelectableLabel implements TableCellRenderer {
+public class HighlightingCellRenderer extends SelectableLabel implements TableCellRenderer, ListCellRenderer<Object>, TreeCellRenderer {
 
     public static final String HIGHLIGHT_PATTERN_PROPERTY = HighlightingCellRenderer.class.getSimpleName() + ".pattern";
+    public static final String HIGHLIGHT_SPANS_PROPERTY = HighlightingCellRenderer.class.getSimpleName() + ".spans";
     private static final String DOTS = "...";
-    private final Highlighter.HighlightPainter highlightPainter;
+    private static final int TRUNCATION_CACHE_SIZE = 512;
+    private static final int LAYOUT_CACHE_SIZE = 512;
+    private final Color highlightColor;
     private final DefaultTableCellRenderer cellRenderer = new DefaultTableCellRenderer();
+    private final DefaultListCellRenderer listCellRenderer = new DefaultListCellRenderer();
+    private final DefaultTreeCellRenderer treeCellRenderer = new DefaultTreeCellRenderer();
+    private final Map<TruncationKey, Integer> truncationCache = new LruCache<TruncationKey, Integer>(TRUNCATION_CACHE_SIZE);
+    private final Map<LayoutKey, TextLayout> layoutCache = new LruCache<LayoutKey, TextLayout>(LAYOUT_CACHE_SIZE);
+    private int[] highlights = new int[8];
+    private int highlightCount;
+    private Icon cellIcon;
+    private Border cellBorder;
+    private LineBorder treeFocusBorder;
+    private boolean treeCell;
+    private boolean focusAroundIcon;
 
     public HighlightingCellRenderer(Color color) {
+        super("", false, true);
         Validate.notNull(color, "Color may not be null");
         setBorder(
                 Borders.createEmptyBorder(
@@ -54,66 +80,336 @@ public class HighlightingCellRenderer extends SelectableLabel implements TableCe
                         Sizes.dluX(2)
                 )
         );
-        highlightPainter = new DefaultHighlighter.DefaultHighlightPainter(color);
+        highlightColor = color;
         setOpaque(true);
+        setFocusable(false);
         setIgnoreRepaint(true);
     }
 
     public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int col) {
         cellRenderer.getTableCellRendererComponent(table, null, isSelected, hasFocus, row, col);
+        HighlightSpanProvider spans = findSpanProvider(table, table.getModel());
+        if (spans == null && table.getRowSorter() instanceof DefaultRowSorter) {
+            spans = findSpanProvider(null, ((DefaultRowSorter)table.getRowSorter()).getRowFilter());
+        }
+        if (spans != null && value != null && row >= 0 && col >= 0) {
+            row = table.convertRowIndexToModel(row);
+            col = table.convertColumnIndexToModel(col);
+        }
+        configure(table, value, isSelected, cellRenderer, spans, row, col);
+        return this;
+    }
+
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+        listCellRenderer.getListCellRendererComponent(list, null, index, isSelected, cellHasFocus);
+        configure(list, value, isSelected, listCellRenderer, findSpanProvider(list, list.getModel()), index, 0);
+        return this;
+    }
+
+    public Component getTreeCellRendererComponent(JTree tree, Object value, boolean isSelected, boolean expanded, boolean leaf, int row, boolean hasFocus) {
+        String text = value == null ? null : tree.convertValueToText(value, isSelected, expanded, leaf, row, hasFocus);
+        treeCellRenderer.getTreeCellRendererComponent(tree, null, isSelected, expanded, leaf, row, hasFocus);
+        treeCellRenderer.setBackground(isSelected ? treeCellRenderer.getBackgroundSelectionColor() : tree.getBackground());
+        treeCellRenderer.setForeground(isSelected ? treeCellRenderer.getTextSelectionColor() : treeCellRenderer.getTextNonSelectionColor());
+        treeCellRenderer.setFont(tree.getFont());
+        configure(tree, text, isSelected, treeCellRenderer, findSpanProvider(tree, tree.getModel()), row, 0);
+        treeCell = true;
+        Color focusColor = treeCellRenderer.getBorderSelectionColor();
+        if (hasFocus && focusColor != null) {
+            if (treeFocusBorder == null || !focusColor.equals(treeFocusBorder.getLineColor())) {
+                treeFocusBorder = new LineBorder(focusColor);
+            }
+            cellBorder = treeFocusBorder;
+            focusAroundIcon = UIManager.getBoolean("Tree.drawsFocusBorderAroundIcon");
+        }
+        return this;
+    }
+
+    private static HighlightSpanProvider findSpanProvider(JComponent owner, Object model) {
+        Object property = owner == null ? null : owner.getClientProperty(HIGHLIGHT_SPANS_PROPERTY);
+        if (property instanceof HighlightSpanProvider) {
+            return (HighlightSpanProvider)property;
+        }
+        return model instanceof HighlightSpanProvider ? (HighlightSpanProvider)model : null;
+    }
+
+    /**
+     * Shared rendering path for all cell types: copies the look and icon of the delegate renderer and collects the
+     * highlights from the span provider if there is one, otherwise from the owner's {@link #HIGHLIGHT_PATTERN_PROPERTY}.
+     */
+    private void configure(JComponent owner, Object value, boolean isSelected, JLabel delegate, HighlightSpanProvider spanProvider, int row, int column) {
         String text = value == null ? "" : value.toString();
-        setIgnoreRepaint(true);
         setText(text);
-        setFont(cellRenderer.getFont());
-        setBackground(cellRenderer.getBackground());
-        setForeground(cellRenderer.getForeground());
-        getHighlighter().removeAllHighlights();
-        Pattern pattern = (Pattern)table.getClientProperty(HIGHLIGHT_PATTERN_PROPERTY);
-        if (value != null && !isSelected && pattern != null) {
-            Matcher m = pattern.matcher(text);
-            while (m.find()) {
-                try {
-                    getHighlighter().addHighlight(m.start(), m.end(), highlightPainter);
-                } catch (BadLocationException e) {
-                    e.printStackTrace();
+        setFont(delegate.getFont());
+        setBackground(delegate.getBackground());
+        setForeground(delegate.getForeground());
+        cellIcon = delegate.getIcon();
+        cellBorder = delegate.getBorder();
+        treeCell = false;
+        focusAroundIcon = true;
+        highlightCount = 0;
+        if (value == null || isSelected) {
+            return;
+        }
+        if (spanProvider != null) {
+            int[] spans = row < 0 ? null : spanProvider.getHighlightSpans(row, column);
+            if (spans != null) {
+                for (int i = 0; i + 1 < spans.length; i += 2) {
+                    addHighlight(Math.max(spans[i], 0), Math.min(spans[i + 1], text.length()));
+                }
+            }
+        } else {
+            Pattern pattern = (Pattern)owner.getClientProperty(HIGHLIGHT_PATTERN_PROPERTY);
+            if (pattern != null) {
+                Matcher m = pattern.matcher(text);
+                while (m.find()) {
+                    addHighlight(m.start(), m.end());
                 }
             }
         }
-        return this;
+    }
+
+    private void addHighlight(int start, int end) {
+        if (start < end) {
+            if (highlightCount + 2 > highlights.length) {
+                int[] grown = new int[highlights.length * 2];
+                System.arraycopy(highlights, 0, grown, 0, highlightCount);
+                highlights = grown;
+            }
+            highlights[highlightCount++] = start;
+            highlights[highlightCount++] = end;
+        }
     }
 
     public int getPreferredRowHeight(JTable table) {
         return getTableCellRendererComponent(table, null, false, false, 0, 0).getPreferredSize().height;
     }
 
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet() || getFont() == null) {
+            return super.getPreferredSize();
+        }
+        Insets insets = getInsets();
+        TextLayout layout = getTextLayout();
+        int width = layout == null ? 0 : (int)Math.ceil(layout.getAdvance());
+        int height = getFontMetrics(getFont()).getHeight();
+        if (cellIcon != null) {
+            width += getTextOffset();
+            height = Math.max(height, cellIcon.getIconHeight());
+        }
+        return new Dimension(width + insets.left + insets.right, height + insets.top + insets.bottom);
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        int width = getWidth();
+        int textOffset = getTextOffset();
+        int labelStart = treeCell ? textOffset : 0;
+        if (isOpaque()) {
+            g.setColor(getBackground());
+            g.fillRect(labelStart, 0, getWidth() - labelStart, getHeight());
+        }
         Insets insets = getInsets();
-        if (width < getPreferredSize().width) {
-            // todo: fix magic number bug for insets.top + 5
-            int pos = viewToModel(new Point(width - insets.right, insets.top + 5));
-            if (pos > 0) {
-                try {
-                    Rectangle rectangle;
-                    int dotsWidth = g.getFontMetrics().stringWidth(DOTS);
-                    while ((rectangle = modelToView(pos)).x > width - dotsWidth - insets.right) {
-                        if (--pos < 1) {
-                            break;
-                        }
-                    }
-                    g.setColor(getBackground());
-                    g.fillRect(rectangle.x, rectangle.y, width - rectangle.x - insets.right, rectangle.height);
-                    g.setColor(getForeground());
-                    g.drawString(DOTS, rectangle.x, getBaseline(width, getHeight()));
-                } catch (BadLocationException e) {
-                    e.printStackTrace();
+        int availableHeight = getHeight() - insets.top - insets.bottom;
+        if (cellIcon != null) {
+            cellIcon.paintIcon(this, g, insets.left, insets.top + (availableHeight - cellIcon.getIconHeight()) / 2);
+        }
+        TextLayout layout = getTextLayout();
+        if (layout != null) {
+            int x = insets.left + textOffset;
+            FontMetrics metrics = getFontMetrics(getFont());
+            int y = insets.top + (availableHeight - metrics.getHeight()) / 2 + metrics.getAscent();
+            int truncatedWidth = getTruncatedTextWidth(getText(), getFont(), getWidth() - insets.right - x);
+            Graphics2D g2 = (Graphics2D)g.create();
+            try {
+                if (truncatedWidth >= 0) {
+                    g2.clipRect(0, 0, x + truncatedWidth, getHeight());
+                }
+                g2.translate(x, y);
+                g2.setColor(highlightColor);
+                for (int i = 0; i < highlightCount; i += 2) {
+                    g2.fill(layout.getLogicalHighlightShape(highlights[i], highlights[i + 1]));
+                }
+                g2.setColor(getForeground());
+                layout.draw(g2, 0, 0);
+            } finally {
+                g2.dispose();
+            }
+            if (truncatedWidth >= 0) {
+                g.setColor(getForeground());
+                g.setFont(getFont());
+                g.drawString(DOTS, x + truncatedWidth, y);
+            }
+        }
+        if (cellBorder != null) {
+            int borderStart = focusAroundIcon ? labelStart : textOffset;
+            cellBorder.paintBorder(this, g, borderStart, 0, getWidth() - borderStart, getHeight());
+        }
+    }
+
+    private int getTextOffset() {
+        return cellIcon == null ? 0 : cellIcon.getIconWidth() + getIconTextGap();
+    }
+
+    /**
+     * Returns the layout of the current text, shared by all cells with the same text and font, or {@code null} if
+     * there is no text.
+     */
+    private TextLayout getTextLayout() {
+        String text = getText();
+        Font font = getFont();
+        if (text == null || text.length() == 0 || font == null) {
+            return null;
+        }
+        FontRenderContext context = getFontMetrics(font).getFontRenderContext();
+        LayoutKey key = new LayoutKey(text, font, context);
+        TextLayout layout = layoutCache.get(key);
+        if (layout == null) {
+            layout = new TextLayout(text, font, context);
+            layoutCache.put(key, layout);
+        }
+        return layout;
+    }
+
+    // The following methods are overridden for performance reasons, see DefaultTableCellRenderer
+
+    @Override
+    public void invalidate() {
+    }
+
+    @Override
+    public void validate() {
+    }
+
+    @Override
+    public void revalidate() {
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+    }
+
+    @Override
+    public void repaint(Rectangle r) {
+    }
+
+    @Override
+    public void repaint() {
+    }
+
+    @Override
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+        if ("text".equals(propertyName)) {
+            super.firePropertyChange(propertyName, oldValue, newValue);
+        }
+    }
+
+    @Override
+    public void firePropertyChange(String propertyName, boolean oldValue, boolean newValue) {
+    }
+
+    /**
+     * Returns the width of the part of the text that may be painted in front of the dots, or -1 if the whole text fits.
+     * The result is found by a binary search over the cumulative character advances, and cached per text, font and width.
+     */
+    int getTruncatedTextWidth(String text, Font font, int availableWidth) {
+        TruncationKey key = new TruncationKey(text, font, availableWidth);
+        Integer cached = truncationCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        FontMetrics metrics = getFontMetrics(font);
+        int[] advances = new int[text.length() + 1];
+        for (int i = 0; i < text.length(); i++) {
+            advances[i + 1] = advances[i] + metrics.charWidth(text.charAt(i));
+        }
+        int result = -1;
+        if (advances[text.length()] > availableWidth) {
+            int maxWidth = availableWidth - metrics.stringWidth(DOTS);
+            int low = 0;
+            int high = text.length();
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (advances[mid] <= maxWidth) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
                 }
             }
+            result = advances[low];
         }
-        if(cellRenderer.getBorder() != null) {
-            cellRenderer.getBorder().paintBorder(this, g, 0, 0, getWidth(), getHeight());
+        truncationCache.put(key, result);
+        return result;
+    }
+
+    private static class TruncationKey {
+        private final String text;
+        private final Font font;
+        private final int width;
+
+        private TruncationKey(String text, Font font, int width) {
+            this.text = text;
+            this.font = font;
+            this.width = width;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof TruncationKey)) {
+                return false;
+            }
+            TruncationKey key = (TruncationKey)other;
+            return width == key.width && text.equals(key.text) && (font == null ? key.font == null : font.equals(key.font));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = text.hashCode();
+            result = 31 * result + (font != null ? font.hashCode() : 0);
+            return 31 * result + width;
+        }
+    }
+
+    private static class LayoutKey {
+        private final String text;
+        private final Font font;
+        private final FontRenderContext context;
+
+        private LayoutKey(String text, Font font, FontRenderContext context) {
+            this.text = text;
+            this.font = font;
+            this.context = context;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof LayoutKey)) {
+                return false;
+            }
+            LayoutKey key = (LayoutKey)other;
+            return text.equals(key.text) && font.equals(key.font) && context.equals(key.context);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = text.hashCode();
+            result = 31 * result + font.hashCode();
+            return 31 * result + context.hashCode();
+        }
+    }
+
+    private static class LruCache<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        private LruCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
         }
     }
 }
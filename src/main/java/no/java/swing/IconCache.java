@@ -0,0 +1,335 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing;
+
+import org.apache.commons.lang.Validate;
+
+import javax.swing.*;
+import javax.swing.plaf.UIResource;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A shared cache of icons read from URLs, keyed by URL and size, so each image is decoded only once.
+ * <p/>
+ * {@link #getImageIcon(URL, int, int)} returns the icon with its image decoded, for callers that need the image or
+ * the final size right away. {@link #getIcon(URL, int, int)} returns at once, with a transparent placeholder that is
+ * filled in when the image has been decoded on a background thread. Both return the same shared icon for the same URL
+ * and size.
+ * <p/>
+ * When an image arrives, the components that painted the placeholder, and the labels and buttons registered with
+ * {@link #addDependent(Component, Icon)}, are repainted. Labels and buttons are also revalidated and get their disabled
+ * icons computed again.
+ * <p/>
+ * Icons are held by soft references, and at most {@value #MAX_ENTRIES} icons are kept.
+ */
+public final class IconCache {
+    private static final int MAX_ENTRIES = 256;
+    private static final int DEFAULT_SIZE = 16;
+
+    private static final Map<IconKey, SoftReference<LoadingIcon>> icons = new LinkedHashMap<IconKey, SoftReference<LoadingIcon>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<IconKey, SoftReference<LoadingIcon>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private static final ExecutorService executor;
+    private static final Set<LoadingIcon> loaded = new HashSet<LoadingIcon>();
+
+    static {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "IconCache-loader");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    private IconCache() {
+    }
+
+    /**
+     * Returns the icon for the image at the URL in its natural size, with the image decoded.
+     *
+     * @see #getImageIcon(URL, int, int)
+     */
+    public static ImageIcon getImageIcon(URL url) {
+        return getImageIcon(url, -1, -1);
+    }
+
+    /**
+     * Returns the icon for the image at the URL, scaled to the given size. If the image is not decoded yet, it is
+     * decoded by the calling thread, or the calling thread waits for the background thread already decoding it.
+     *
+     * @param url    the image URL. May not be {@code null}.
+     * @param width  the icon width, or {@code -1} for the natural width of the image.
+     * @param height the icon height, or {@code -1} for the natural height of the image.
+     * @return the shared icon.
+     */
+    public static ImageIcon getImageIcon(URL url, int width, int height) {
+        LoadingIcon icon = getCachedIcon(url, width, height, false);
+        icon.awaitImage();
+        return icon;
+    }
+
+    /**
+     * Returns the icon for the image at the URL in its natural size.
+     *
+     * @see #getIcon(URL, int, int)
+     */
+    public static ImageIcon getIcon(URL url) {
+        return getIcon(url, -1, -1);
+    }
+
+    /**
+     * Returns the icon for the image at the URL, scaled to the given size, without waiting for the image. Until the
+     * image is decoded, the icon is a transparent placeholder of the requested size, or of 16x16 pixels if no size is
+     * given. Register labels and buttons the icon is set on with {@link #addDependent(Component, Icon)}.
+     *
+     * @param url    the image URL. May not be {@code null}.
+     * @param width  the icon width, or {@code -1} for the natural width of the image.
+     * @param height the icon height, or {@code -1} for the natural height of the image.
+     * @return the shared icon.
+     */
+    public static ImageIcon getIcon(URL url, int width, int height) {
+        return getCachedIcon(url, width, height, true);
+    }
+
+    /**
+     * Registers a component showing an icon returned by {@link #getIcon(URL, int, int)}, to be updated when the image
+     * arrives. Components painting the placeholder are registered automatically, but a label or button should be
+     * registered when the icon is set on it, as it may be laid out first, or be disabled and paint a grayed copy of
+     * the placeholder. Icons not from this cache, or already loaded, are ignored.
+     *
+     * @param component the component. May not be {@code null}.
+     * @param icon      the icon set on the component, or {@code null}.
+     */
+    public static void addDependent(Component component, Icon icon) {
+        Validate.notNull(component, "Component may not be null");
+        if (icon instanceof LoadingIcon) {
+            ((LoadingIcon) icon).addDependent(component);
+        }
+    }
+
+    private static LoadingIcon getCachedIcon(URL url, int width, int height, boolean loadInBackground) {
+        Validate.notNull(url, "URL may not be null");
+        IconKey key = new IconKey(url.toExternalForm(), width, height);
+        LoadingIcon icon;
+        synchronized (icons) {
+            SoftReference<LoadingIcon> reference = icons.get(key);
+            icon = reference != null ? reference.get() : null;
+            if (icon != null) {
+                return icon;
+            }
+            icon = new LoadingIcon(url, width, height);
+            icons.put(key, new SoftReference<LoadingIcon>(icon));
+        }
+        if (loadInBackground) {
+            executor.execute(icon.decoding);
+        }
+        return icon;
+    }
+
+    private static void imageLoaded(LoadingIcon icon) {
+        synchronized (loaded) {
+            loaded.add(icon);
+            if (loaded.size() > 1) {
+                return;
+            }
+        }
+        // Images decoded in the same burst are handed to the EDT together
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                List<LoadingIcon> batch;
+                synchronized (loaded) {
+                    batch = new ArrayList<LoadingIcon>(loaded);
+                    loaded.clear();
+                }
+                for (LoadingIcon icon : batch) {
+                    icon.update();
+                }
+            }
+        });
+    }
+
+    private static class LoadingIcon extends ImageIcon {
+        private static final long serialVersionUID = 1L;
+
+        private final URL url;
+        private final int width;
+        private final int height;
+        private final transient Map<Component, Boolean> dependents = new WeakHashMap<Component, Boolean>();
+        private final transient FutureTask<Image> decoding;
+        private boolean updated;
+
+        private LoadingIcon(URL url, int width, int height) {
+            super(createPlaceholder(width, height), url.toExternalForm());
+            this.url = url;
+            this.width = width;
+            this.height = height;
+            decoding = new FutureTask<Image>(new Callable<Image>() {
+                public Image call() throws Exception {
+                    return decode();
+                }
+            }) {
+                @Override
+                protected void done() {
+                    imageLoaded(LoadingIcon.this);
+                }
+            };
+        }
+
+        private static Image createPlaceholder(int width, int height) {
+            int placeholderWidth = width > 0 ? width : DEFAULT_SIZE;
+            int placeholderHeight = height > 0 ? height : DEFAULT_SIZE;
+            return new BufferedImage(placeholderWidth, placeholderHeight, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        private Image decode() {
+            // Toolkit.getImage would cache the image forever, outside of this cache
+            Image decoded = new ImageIcon(Toolkit.getDefaultToolkit().createImage(url)).getImage();
+            if (width > 0 && height > 0 && (decoded.getWidth(null) != width || decoded.getHeight(null) != height)) {
+                decoded = new ImageIcon(decoded.getScaledInstance(width, height, Image.SCALE_SMOOTH)).getImage();
+            }
+            return decoded;
+        }
+
+        private Image getDecodedImage() {
+            try {
+                return decoding.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Decodes the image in the calling thread unless another thread is decoding it already, and shows it. The
+         * dependents are still updated on the EDT.
+         */
+        private void awaitImage() {
+            decoding.run();
+            Image image = getDecodedImage();
+            if (image != null) {
+                synchronized (this) {
+                    setImage(image);
+                }
+            }
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            if (c != null) {
+                addDependent(c);
+            }
+            super.paintIcon(c, g, x, y);
+        }
+
+        private synchronized void addDependent(Component component) {
+            if (!updated) {
+                dependents.put(component, Boolean.TRUE);
+            }
+        }
+
+        private void update() {
+            Image image = getDecodedImage();
+            Set<Component> components;
+            synchronized (this) {
+                if (image != null) {
+                    setImage(image);
+                }
+                updated = true;
+                components = new HashSet<Component>(dependents.keySet());
+                dependents.clear();
+            }
+            for (Component component : components) {
+                if (component instanceof AbstractButton) {
+                    AbstractButton button = (AbstractButton) component;
+                    if (button.getIcon() == this) {
+                        if (button.getDisabledIcon() instanceof UIResource) {
+                            button.setDisabledIcon(null);
+                        }
+                        if (button.getDisabledSelectedIcon() instanceof UIResource) {
+                            button.setDisabledSelectedIcon(null);
+                        }
+                        button.revalidate();
+                    }
+                } else if (component instanceof JLabel) {
+                    JLabel label = (JLabel) component;
+                    if (label.getIcon() == this) {
+                        if (label.getDisabledIcon() instanceof UIResource) {
+                            label.setDisabledIcon(null);
+                        }
+                        label.revalidate();
+                    }
+                }
+                // Renderers are painted through a CellRendererPane, repaint the table, list or tree instead
+                Container parent = component.getParent();
+                if (parent instanceof CellRendererPane && parent.getParent() != null) {
+                    parent.getParent().repaint();
+                } else {
+                    component.repaint();
+                }
+            }
+        }
+    }
+
+    private static class IconKey {
+        private final String url;
+        private final int width;
+        private final int height;
+
+        private IconKey(String url, int width, int height) {
+            this.url = url;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof IconKey)) {
+                return false;
+            }
+            IconKey key = (IconKey) other;
+            return url.equals(key.url) && width == key.width && height == key.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * url.hashCode() + width) + height;
+        }
+    }
+}
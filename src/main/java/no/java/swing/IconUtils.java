@@ -22,14 +22,72 @@ import javax.swing.filechooser.FileSystemView;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class IconUtils {
 
-    private static final Map<String, Icon> FILE_EXTENSION_ICON_CACHE = Collections.synchronizedMap(new HashMap<String, Icon>());
+    private static final int MAX_CACHED_EXTENSIONS = 512;
+    private static final int MAX_CACHED_FILES = 256;
+    // Icons by extension, and by file and modification time for files with icons of their own when icons are shared by
+    // extension. Each icon is loaded once per key outside of the lock while other keys load in parallel, and the least
+    // recently used are evicted first
+    private static final Map<String, Future<Icon>> FILE_EXTENSION_ICON_CACHE = createIconCache(MAX_CACHED_EXTENSIONS);
+    private static final Map<String, Future<Icon>> FILE_ICON_CACHE = createIconCache(MAX_CACHED_FILES);
+    private static volatile File scratchDirectory;
+    // Extensions of files which may have icons of their own, such as programs and shortcuts
+    private static final Set<String> PER_FILE_EXTENSIONS = new HashSet<String>(Arrays.asList(
+            ".exe", ".lnk", ".url", ".ico", ".cur", ".ani", ".scr", ".app"));
+    private static final ExecutorService PREFETCH_EXECUTOR;
+
+    static {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "IconUtils-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        PREFETCH_EXECUTOR = pool;
+    }
+
+    /**
+     * Sets a directory to keep empty files in, one per extension, for looking up extension icons. By default a
+     * temporary file is created and deleted for each extension.
+     *
+     * @param directory the directory, or {@code null} to use temporary files.
+     */
+    public static void setScratchDirectory(final File directory) {
+        scratchDirectory = directory;
+    }
 
     /**
      * Tries to find the native system icon for a file extension.
@@ -40,64 +98,203 @@ public class IconUtils {
      */
     public static Icon getIconForExtension(final String extension, final boolean large) {
         Validate.notNull(extension, "Extension may not be null");
-        synchronized (FILE_EXTENSION_ICON_CACHE) {
-            String key = large + ":" + extension;
-            Icon icon = FILE_EXTENSION_ICON_CACHE.get(key);
-            if (icon != null) {
-                return icon;
+        return getCachedIcon(FILE_EXTENSION_ICON_CACHE, large + ":" + extension, new Callable<Icon>() {
+            public Icon call() throws Exception {
+                return loadIconForExtension(extension, large);
             }
-            File tempFile = null;
-            try {
-                tempFile = File.createTempFile("icon", extension);
-                icon = getIconForFile(tempFile, large);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            } finally {
-                if (tempFile != null) {
-                    if (!tempFile.delete()) {
-                        tempFile.deleteOnExit();
-                    }
-                }
+        });
+    }
+
+    private static Map<String, Future<Icon>> createIconCache(final int maxEntries) {
+        return new LinkedHashMap<String, Future<Icon>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Future<Icon>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static Icon getCachedIcon(final Map<String, Future<Icon>> cache, final String key, final Callable<Icon> loader) {
+        FutureTask<Icon> task = null;
+        Future<Icon> future;
+        synchronized (cache) {
+            future = cache.get(key);
+            if (future == null) {
+                task = new FutureTask<Icon>(loader);
+                future = task;
+                cache.put(key, task);
             }
-            if (icon != null) {
-                FILE_EXTENSION_ICON_CACHE.put(key, icon);
+        }
+        if (task != null) {
+            task.run();
+        }
+        try {
+            Icon icon = future.get();
+            if (icon == null) {
+                // not cached, as before
+                removeFromCache(cache, key, future);
             }
             return icon;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            removeFromCache(cache, key, future);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static void removeFromCache(final Map<String, Future<Icon>> cache, final String key, final Future<Icon> future) {
+        synchronized (cache) {
+            if (cache.get(key) == future) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the icon for the file is loaded and cached.
+     */
+    static boolean isIconCached(final File file, final boolean large) {
+        boolean ownIcon = hasIconOfItsOwn(file);
+        Map<String, Future<Icon>> cache = ownIcon ? FILE_ICON_CACHE : FILE_EXTENSION_ICON_CACHE;
+        String key = ownIcon ? getFileKey(file, large) : large + ":" + getExtension(file);
+        synchronized (cache) {
+            Future<Icon> future = cache.get(key);
+            return future != null && future.isDone();
+        }
+    }
+
+    private static Icon loadIconForExtension(final String extension, final boolean large) throws IOException {
+        File directory = scratchDirectory;
+        if (directory != null) {
+            File scratchFile = new File(directory, "icon" + extension);
+            if (!scratchFile.exists() && (directory.isDirectory() || directory.mkdirs())) {
+                try {
+                    scratchFile.createNewFile();
+                } catch (IOException ignore) {
+                    // fall back to a temporary file
+                }
+            }
+            if (scratchFile.exists()) {
+                return loadIconForFile(scratchFile, large);
+            }
+        }
+        File tempFile = File.createTempFile("icon", extension);
+        try {
+            return loadIconForFile(tempFile, large);
+        } finally {
+            if (!tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
         }
     }
 
     /**
-     * Tries to find the native system icon for a file.
+     * Tries to find the native system icon for a file. The icon is looked up for each call.
      *
      * @param file  file to find an icon for. May not be {@code null}.
      * @param large when {@code true} an attempt to fetch a large icon is made.
      * @return the system spesific icon or {@code null} if no icon is found.
+     * @see #getIconForFile(File, boolean, boolean)
      */
     public static Icon getIconForFile(final File file, final boolean large) {
+        return getIconForFile(file, large, false);
+    }
+
+    /**
+     * Tries to find the native system icon for a file, optionally sharing the icon of the file's extension.
+     * <p/>
+     * When sharing by extension, files which are not directories, programs or shortcuts get the cached icon of their
+     * extension, and the icons of other files are cached until the files are modified. This is much faster for views
+     * showing many files, and fills the same caches as {@link #prefetchIcons(Collection, boolean, Runnable)}, but a
+     * file with a custom icon of its own shows the icon of its extension.
+     *
+     * @param file             file to find an icon for. May not be {@code null}.
+     * @param large            when {@code true} an attempt to fetch a large icon is made.
+     * @param shareByExtension when {@code true} the icon may be shared with other files of the same extension.
+     * @return the system spesific icon or {@code null} if no icon is found.
+     */
+    public static Icon getIconForFile(final File file, final boolean large, final boolean shareByExtension) {
         Validate.notNull(file, "File may not be null");
         if (!file.exists()) {
             return getIconForExtension(getExtension(file), large);
         }
-        Icon icon = null;
-        try {
-            Method getShellFolderMethod = Class.forName("sun.awt.shell.ShellFolder").getMethod("getShellFolder", File.class);
-            getShellFolderMethod.setAccessible(true);
-            Object shellFolder = getShellFolderMethod.invoke(null, file);
-            Method getIconMethod = shellFolder.getClass().getMethod("getIcon", boolean.class);
-            getIconMethod.setAccessible(true);
-            Object iconObject = getIconMethod.invoke(shellFolder, large);
-            if (iconObject instanceof Image) {
-                icon = new ImageIcon((Image)iconObject);
-            }
-        } catch (Exception ignore) {
-            // shell folder not supported
+        if (!shareByExtension) {
+            return loadIconForFile(file, large);
         }
+        if (!hasIconOfItsOwn(file)) {
+            return getIconForExtension(getExtension(file), large);
+        }
+        return getCachedIcon(FILE_ICON_CACHE, getFileKey(file, large), new Callable<Icon>() {
+            public Icon call() throws Exception {
+                return loadIconForFile(file, large);
+            }
+        });
+    }
+
+    /**
+     * Returns the cache key for a file's own icon, which changes when the file is modified.
+     */
+    private static String getFileKey(final File file, final boolean large) {
+        return large + ":" + file.lastModified() + ":" + file.getAbsolutePath();
+    }
+
+    private static Icon loadIconForFile(final File file, final boolean large) {
+        Icon icon = ShellFolderAccess.getIcon(file, large);
         if (icon == null) {
             icon = FileSystemView.getFileSystemView().getSystemIcon(file);
         }
         return icon;
     }
 
+    /**
+     * Looks up the icons for a number of files in the background, for instance before showing a directory listing.
+     *
+     * @see #prefetchIcons(Collection, boolean, Runnable)
+     */
+    public static Future<Map<File, Icon>> prefetchIcons(final Collection<File> files, final boolean large) {
+        return prefetchIcons(files, large, null);
+    }
+
+    /**
+     * Looks up the icons for a number of files in parallel on a small pool of background threads, for instance before
+     * showing a directory listing. The icons are shared by extension, as by {@link #getIconForFile(File, boolean, boolean)},
+     * so the icon is looked up once per extension for files which are not directories, programs or shortcuts. All the
+     * icons are cached, so a renderer calling {@link #getIconForFile(File, boolean, boolean)} with sharing afterwards
+     * gets them at once.
+     * <p/>
+     * Checking the files is done in the background as well, so this method may be called on the event dispatch thread.
+     *
+     * @param files      the files to find icons for. May not be {@code null} or contain {@code null}.
+     * @param large      when {@code true} an attempt to fetch large icons is made.
+     * @param onComplete run on the event dispatch thread when all icons are looked up, for instance to repaint the view.
+     *                   May be {@code null}. Not run if the returned future is cancelled.
+     * @return the icons by file, in the order of the collection, or {@code null} for files where no icon was found.
+     */
+    public static Future<Map<File, Icon>> prefetchIcons(final Collection<File> files, final boolean large, final Runnable onComplete) {
+        Validate.noNullElements(files, "Files may not be null");
+        PrefetchBatch batch = new PrefetchBatch(new ArrayList<File>(files), large, onComplete);
+        PREFETCH_EXECUTOR.execute(batch);
+        return batch.result;
+    }
+
+    private static boolean hasIconOfItsOwn(final File file) {
+        if (!file.exists()) {
+            return false;
+        }
+        String extension = getExtension(file);
+        return file.isDirectory() || extension.length() == 0
+                || PER_FILE_EXTENSIONS.contains(extension.toLowerCase(Locale.ENGLISH));
+    }
+
     /**
      * Returns the file extension for a file. If the file has no extension or is a directory, then an empty string is returned.
      * For example would <code>getExtension(new File("picture.jpg"))</code> return <code>".jpg"</code> and
@@ -118,4 +315,165 @@ public class IconUtils {
         }
     }
 
+    /**
+     * The lookups of one call to {@link #prefetchIcons(Collection, boolean, Runnable)}. Running the batch checks the
+     * files and submits one lookup per file or extension, and the last lookup to finish completes the result.
+     */
+    private static final class PrefetchBatch implements Runnable, Callable<Map<File, Icon>> {
+        private final List<File> files;
+        private final boolean large;
+        private final Runnable onComplete;
+        private final Map<File, Future<Icon>> lookups = new HashMap<File, Future<Icon>>();
+        private final Queue<Future<Icon>> tasks = new ConcurrentLinkedQueue<Future<Icon>>();
+        // the planning in run() counts as one pending lookup, so the result is not completed before it is done
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final FutureTask<Map<File, Icon>> result;
+
+        private PrefetchBatch(final List<File> files, final boolean large, final Runnable onComplete) {
+            this.files = files;
+            this.large = large;
+            this.onComplete = onComplete;
+            this.result = new FutureTask<Map<File, Icon>>(this) {
+                @Override
+                public boolean cancel(boolean mayInterruptIfRunning) {
+                    boolean cancelled = super.cancel(mayInterruptIfRunning);
+                    if (cancelled) {
+                        for (Future<Icon> task : tasks) {
+                            task.cancel(mayInterruptIfRunning);
+                        }
+                    }
+                    return cancelled;
+                }
+            };
+        }
+
+        public void run() {
+            Map<String, Future<Icon>> byExtension = new HashMap<String, Future<Icon>>();
+            for (final File file : files) {
+                if (result.isCancelled()) {
+                    break;
+                }
+                if (lookups.containsKey(file)) {
+                    continue;
+                }
+                Future<Icon> lookup;
+                if (hasIconOfItsOwn(file)) {
+                    lookup = submit(new Callable<Icon>() {
+                        public Icon call() throws Exception {
+                            return getIconForFile(file, large, true);
+                        }
+                    });
+                } else {
+                    final String extension = getExtension(file);
+                    lookup = byExtension.get(extension);
+                    if (lookup == null) {
+                        lookup = submit(new Callable<Icon>() {
+                            public Icon call() throws Exception {
+                                return getIconForExtension(extension, large);
+                            }
+                        });
+                        byExtension.put(extension, lookup);
+                    }
+                }
+                lookups.put(file, lookup);
+            }
+            lookupDone();
+        }
+
+        private Future<Icon> submit(final Callable<Icon> callable) {
+            FutureTask<Icon> task = new FutureTask<Icon>(callable) {
+                @Override
+                protected void done() {
+                    lookupDone();
+                }
+            };
+            pending.incrementAndGet();
+            tasks.add(task);
+            PREFETCH_EXECUTOR.execute(task);
+            return task;
+        }
+
+        private void lookupDone() {
+            if (pending.decrementAndGet() == 0) {
+                result.run();
+                if (onComplete != null && !result.isCancelled()) {
+                    SwingUtilities.invokeLater(onComplete);
+                }
+            }
+        }
+
+        public Map<File, Icon> call() throws Exception {
+            Map<File, Icon> icons = new LinkedHashMap<File, Icon>();
+            for (File file : files) {
+                Future<Icon> lookup = lookups.get(file);
+                Icon icon = null;
+                try {
+                    icon = lookup.get();
+                } catch (ExecutionException ignore) {
+                    // no icon for this file
+                } catch (CancellationException ignore) {
+                    // no icon for this file
+                }
+                icons.put(file, icon);
+            }
+            return Collections.unmodifiableMap(icons);
+        }
+    }
+
+    /**
+     * Reflective access to <code>sun.awt.shell.ShellFolder</code>, which gives better icons than
+     * {@link FileSystemView#getSystemIcon(File)} on some platforms. The methods are looked up once, the icon method once
+     * per concrete shell folder class, and if access is refused the shell folder is never tried again.
+     */
+    private static final class ShellFolderAccess {
+        private static final Method GET_SHELL_FOLDER;
+        private static final ConcurrentMap<Class<?>, Method> GET_ICON_METHODS = new ConcurrentHashMap<Class<?>, Method>();
+        private static volatile boolean supported;
+
+        static {
+            Method getShellFolder = null;
+            try {
+                getShellFolder = Class.forName("sun.awt.shell.ShellFolder").getMethod("getShellFolder", File.class);
+                getShellFolder.setAccessible(true);
+                supported = true;
+            } catch (Exception ignore) {
+                // shell folder not supported
+            }
+            GET_SHELL_FOLDER = getShellFolder;
+        }
+
+        private static Icon getIcon(final File file, final boolean large) {
+            if (!supported) {
+                return null;
+            }
+            try {
+                Object shellFolder = GET_SHELL_FOLDER.invoke(null, file);
+                if (shellFolder != null) {
+                    Object iconObject = getIconMethod(shellFolder.getClass()).invoke(shellFolder, large);
+                    if (iconObject instanceof Image) {
+                        return new ImageIcon((Image) iconObject);
+                    }
+                }
+            } catch (InvocationTargetException ignore) {
+                // no shell folder for this file
+            } catch (NoSuchMethodException ignore) {
+                // not a shell folder with icons
+            } catch (IllegalAccessException e) {
+                supported = false;
+            } catch (RuntimeException ignore) {
+                // fall back to the file system view, as for any other failure
+            }
+            return null;
+        }
+
+        private static Method getIconMethod(final Class<?> shellFolderClass) throws NoSuchMethodException {
+            Method method = GET_ICON_METHODS.get(shellFolderClass);
+            if (method == null) {
+                method = shellFolderClass.getMethod("getIcon", boolean.class);
+                method.setAccessible(true);
+                GET_ICON_METHODS.putIfAbsent(shellFolderClass, method);
+            }
+            return method;
+        }
+    }
 }
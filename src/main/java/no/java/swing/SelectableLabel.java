@@ -27,13 +27,37 @@ import javax.swing.text.BadLocationException;
 import javax.swing.text.Highlighter;
 import javax.swing.text.JTextComponent;
 import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
+ * A label whose text can be selected and copied.
+ * <p/>
+ * A lazy label does not hold a text component until the user presses the mouse on it or focuses it. Until then the
+ * text is painted from cached {@link TextLayout}s, and the text component is discarded again when it loses focus.
+ * This keeps screens with many read-only labels cheap to construct.
+ *
  * @author <a href="mailto:erlend@hamnaberg.net">Erlend Hamnaberg</a>
  * @version $Id $
  */
 public class SelectableLabel extends JLabel {
-    private final JTextComponent textComponent;
+    private final boolean multiline;
+    private final boolean lazy;
+    private JTextComponent textComponent;
+    private List<TextLayout> layouts;
+    private FontRenderContext layoutContext;
+    private int layoutWidth = -1;
+    private boolean forwardingMouseEvents;
 
     public SelectableLabel() {
         this("", false);
@@ -44,9 +68,43 @@ public class SelectableLabel extends JLabel {
     }
 
     public SelectableLabel(String text, boolean multiline) {
+        this(text, multiline, false);
+    }
+
+    /**
+     * Creates a new selectable label.
+     *
+     * @param text      the label text.
+     * @param multiline when {@code true} the text is wrapped at word boundaries.
+     * @param lazy      when {@code true} the text component is created on demand, see the class documentation.
+     */
+    public SelectableLabel(String text, boolean multiline, boolean lazy) {
+        this.multiline = multiline;
+        this.lazy = lazy;
         Border border = UIManager.getBorder("Label.border");
         setBorder(border != null ? border : Borders.EMPTY_BORDER);
         setLayout(new BorderLayout());
+        if (lazy) {
+            String prefix = multiline ? "TextArea" : "TextField";
+            super.setFont(UIManager.getFont(prefix + ".font"));
+            super.setForeground(UIManager.getColor(prefix + ".foreground"));
+            setFocusable(true);
+            LazyHandler handler = new LazyHandler();
+            addMouseListener(handler);
+            addMouseMotionListener(handler);
+            addFocusListener(handler);
+        }
+        else {
+            textComponent = createTextComponent();
+            add(textComponent);
+        }
+        if (!StringUtils.isBlank(text)) {
+            setText(text);
+        }
+    }
+
+    private JTextComponent createTextComponent() {
+        JTextComponent component;
         if (multiline) {
             JTextArea area = new JTextArea(1, 0) {
                 @Override
@@ -57,10 +115,10 @@ public class SelectableLabel extends JLabel {
             };
             area.setWrapStyleWord(true);
             area.setLineWrap(true);
-            textComponent = area;
+            component = area;
         }
         else {
-            textComponent = new JTextField() {
+            component = new JTextField() {
                 @Override
                 public void updateUI() {
                     setUI(new BasicTextFieldUI());
@@ -68,15 +126,58 @@ public class SelectableLabel extends JLabel {
                 }
             };
         }
-        textComponent.setOpaque(false);
-        textComponent.setBackground(new Color(0, true));
-        textComponent.setEditable(false);
-        textComponent.setDropTarget(null);
-        textComponent.setBorder(Borders.EMPTY_BORDER);
-        add(textComponent);
-        if (!StringUtils.isBlank(text)) {
-            setText(text);
+        component.setOpaque(false);
+        component.setBackground(new Color(0, true));
+        component.setEditable(false);
+        component.setDropTarget(null);
+        component.setBorder(Borders.EMPTY_BORDER);
+        return component;
+    }
+
+    /**
+     * Returns the text component, creating it first if this is a lazy label that has not been materialized.
+     */
+    private JTextComponent getTextComponent() {
+        if (textComponent == null) {
+            JTextComponent component = createTextComponent();
+            component.setFont(super.getFont());
+            component.setForeground(super.getForeground());
+            component.setText(super.getText());
+            component.addFocusListener(new FocusAdapter() {
+                @Override
+                public void focusLost(FocusEvent event) {
+                    if (!event.isTemporary()) {
+                        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                discardTextComponent();
+                            }
+                        });
+                    }
+                }
+            });
+            textComponent = component;
+            setFocusable(false);
+            add(component);
+            revalidate();
+            repaint();
+        }
+        return textComponent;
+    }
+
+    private void discardTextComponent() {
+        if (!lazy || textComponent == null || textComponent.isFocusOwner()) {
+            return;
         }
+        JTextComponent component = textComponent;
+        textComponent = null;
+        super.setFont(component.getFont());
+        super.setForeground(component.getForeground());
+        super.setText(component.getText());
+        remove(component);
+        setFocusable(true);
+        layouts = null;
+        revalidate();
+        repaint();
     }
 
     @Override
@@ -85,6 +186,75 @@ public class SelectableLabel extends JLabel {
             g.setColor(getBackground());
             g.fillRect(0, 0, getWidth(), getHeight());
         }
+        if (textComponent == null && getFont() != null) {
+            Insets insets = getInsets();
+            Graphics2D g2 = (Graphics2D) g;
+            FontMetrics metrics = getFontMetrics(getFont());
+            List<TextLayout> lines = getLayouts(getWidth() - insets.left - insets.right);
+            g2.setColor(getForeground());
+            int y = insets.top + metrics.getAscent();
+            if (!multiline) {
+                y += (getHeight() - insets.top - insets.bottom - metrics.getHeight()) / 2;
+            }
+            for (TextLayout line : lines) {
+                line.draw(g2, insets.left, y);
+                y += metrics.getHeight();
+            }
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (textComponent != null || isPreferredSizeSet() || getFont() == null) {
+            return super.getPreferredSize();
+        }
+        Insets insets = getInsets();
+        FontMetrics metrics = getFontMetrics(getFont());
+        int width = multiline && getWidth() > 0 ? getWidth() - insets.left - insets.right : Integer.MAX_VALUE;
+        List<TextLayout> lines = getLayouts(width);
+        float textWidth = 0;
+        for (TextLayout line : lines) {
+            textWidth = Math.max(textWidth, line.getAdvance());
+        }
+        return new Dimension(
+                (int) Math.ceil(textWidth) + insets.left + insets.right,
+                Math.max(lines.size(), 1) * metrics.getHeight() + insets.top + insets.bottom
+        );
+    }
+
+    /**
+     * Returns the lines of the text wrapped at the width. The layouts are always made with the font render context of
+     * the component, not of the graphics painted on, so that painting and size calculations share them.
+     */
+    List<TextLayout> getLayouts(int width) {
+        if (!multiline) {
+            width = Integer.MAX_VALUE;
+        }
+        FontRenderContext context = getFontMetrics(getFont()).getFontRenderContext();
+        if (layouts != null && width == layoutWidth && context.equals(layoutContext)) {
+            return layouts;
+        }
+        List<TextLayout> lines = new ArrayList<TextLayout>();
+        String text = super.getText();
+        if (!StringUtils.isEmpty(text)) {
+            String[] paragraphs = multiline ? text.split("\n", -1) : new String[]{text};
+            for (String paragraph : paragraphs) {
+                if (paragraph.length() == 0) {
+                    lines.add(new TextLayout(" ", getFont(), context));
+                    continue;
+                }
+                AttributedString attributed = new AttributedString(paragraph);
+                attributed.addAttribute(TextAttribute.FONT, getFont());
+                LineBreakMeasurer measurer = new LineBreakMeasurer(attributed.getIterator(), context);
+                while (measurer.getPosition() < paragraph.length()) {
+                    lines.add(measurer.nextLayout(Math.max(width, 1)));
+                }
+            }
+        }
+        layouts = lines;
+        layoutContext = context;
+        layoutWidth = width;
+        return lines;
     }
 
     @Override
@@ -94,50 +264,123 @@ public class SelectableLabel extends JLabel {
 
     @Override
     public void setFont(Font font) {
-        textComponent.setFont(font);
+        if (textComponent != null) {
+            textComponent.setFont(font);
+        }
+        else {
+            super.setFont(font);
+            layouts = null;
+        }
     }
 
     @Override
     public Font getFont() {
-        return textComponent.getFont();
+        return textComponent != null ? textComponent.getFont() : super.getFont();
     }
 
     @Override
     public void setText(String text) {
-        // Invoked from sper constructor, so we need to guard...
+        // Invoked from super constructor, so we need to guard...
         if (textComponent != null) {
             textComponent.setText(text);
         }
+        else {
+            super.setText(text);
+            layouts = null;
+        }
     }
 
     @Override
     public String getText() {
-        return textComponent.getText();
+        return textComponent != null ? textComponent.getText() : super.getText();
     }
 
     protected Highlighter getHighlighter() {
-        return textComponent.getHighlighter();
+        return getTextComponent().getHighlighter();
     }
 
     protected void setHighlighter(Highlighter highlighter) {
-        textComponent.setHighlighter(highlighter);
+        getTextComponent().setHighlighter(highlighter);
     }
 
     protected int viewToModel(Point point) {
-        return textComponent.viewToModel(point);
+        return getTextComponent().viewToModel(point);
     }
 
     protected Rectangle modelToView(int pos) throws BadLocationException {
-        return textComponent.modelToView(pos);
+        return getTextComponent().modelToView(pos);
     }
 
     @Override
     public void setForeground(Color fg) {
-        textComponent.setForeground(fg);
+        if (textComponent != null) {
+            textComponent.setForeground(fg);
+        }
+        else {
+            super.setForeground(fg);
+        }
     }
 
     @Override
     public Color getForeground() {
-        return textComponent.getForeground();
+        return textComponent != null ? textComponent.getForeground() : super.getForeground();
+    }
+
+    /**
+     * Materializes the text component of a lazy label when it is pressed or focused, and forwards the mouse gesture
+     * that caused it so the selection starts where the user pressed.
+     */
+    private class LazyHandler extends MouseAdapter implements FocusListener {
+
+        @Override
+        public void mousePressed(MouseEvent event) {
+            if (textComponent == null && SwingUtilities.isLeftMouseButton(event) && materialize()) {
+                forwardingMouseEvents = true;
+                forward(event);
+            }
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent event) {
+            if (forwardingMouseEvents) {
+                forward(event);
+            }
+        }
+
+        @Override
+        public void mouseReleased(MouseEvent event) {
+            if (forwardingMouseEvents) {
+                forwardingMouseEvents = false;
+                forward(event);
+            }
+        }
+
+        /**
+         * Creates the text component and moves the focus to it. The text component is only discarded when it loses
+         * the focus, so if it can't get the focus it is discarded right away.
+         */
+        private boolean materialize() {
+            getTextComponent();
+            validate();
+            if (!textComponent.requestFocusInWindow()) {
+                discardTextComponent();
+            }
+            return textComponent != null;
+        }
+
+        private void forward(MouseEvent event) {
+            if (textComponent != null) {
+                textComponent.dispatchEvent(SwingUtilities.convertMouseEvent(SelectableLabel.this, event, textComponent));
+            }
+        }
+
+        public void focusGained(FocusEvent event) {
+            if (textComponent == null) {
+                materialize();
+            }
+        }
+
+        public void focusLost(FocusEvent event) {
+        }
     }
 }
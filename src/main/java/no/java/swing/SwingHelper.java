@@ -207,6 +207,9 @@ public class SwingHelper {
     /**
      * Reads an icon resource from the class path.
      * <p/>
+     * The icon is shared through {@link IconCache}, so each image is only decoded once. Use
+     * {@link IconCache#getIcon(java.net.URL)} to decode the image in the background instead.
+     * <p/>
      * The icon is read using the default <tt>ClassLoader</tt>. Only absolute
      * paths are used.
      *
@@ -223,6 +226,9 @@ public class SwingHelper {
     /**
      * Reads an icon resource from the class path.
      * <p/>
+     * The icon is shared through {@link IconCache}, so each image is only decoded once. Use
+     * {@link IconCache#getIcon(java.net.URL)} to decode the image in the background instead.
+     * <p/>
      * The icon is read using the <tt>ClassLoader</tt> of the <tt>pRelativeTo</tt>
      * parameter if given. The path may be relative to (in the same package as)
      * the given class, or absolute (relative to the class path root). The path is
@@ -256,11 +262,11 @@ public class SwingHelper {
 
         Validate.notNull(resource, "No icon found for path: \"" + pPath + "\"");
 
-        return new ImageIcon(resource);
+        return IconCache.getImageIcon(resource);
     }
 
     public static JLabel createLabel(final String textWithMnemonic, final JComponent labelForComponent) {
-        TextWithMnemonic parsedTextWithMnemonic = new TextWithMnemonic(textWithMnemonic);
+        TextWithMnemonic parsedTextWithMnemonic = TextWithMnemonic.valueOf(textWithMnemonic);
         JLabel label = new JLabel(parsedTextWithMnemonic.getTextWithoutMnemonic());
         if (parsedTextWithMnemonic.getMnemonic() != null) {
             label.setDisplayedMnemonic(parsedTextWithMnemonic.getMnemonic());
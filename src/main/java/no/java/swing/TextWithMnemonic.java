@@ -16,39 +16,76 @@
 package no.java.swing;
 
 import org.apache.commons.lang.Validate;
-import org.apache.commons.lang.builder.EqualsBuilder;
-import org.apache.commons.lang.builder.HashCodeBuilder;
-import org.apache.commons.lang.builder.ToStringBuilder;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * A text where the character following a <code>&amp;</code> is the mnemonic, e.g. <code>"&amp;File"</code>.
+ * Only letters, digits and <code>_</code> can be mnemonics, other <code>&amp;</code> characters are kept as is.
+ *
  * @author <a href="mailto:yngvars@gmail.no">Yngvar S&oslash;rensen</a>
  */
 public final class TextWithMnemonic {
+    private static final int MAX_INTERNED = 1024;
+    private static final ConcurrentMap<String, TextWithMnemonic> INTERNED = new ConcurrentHashMap<String, TextWithMnemonic>();
 
-    private static final String MNEMONIC_REG_EXP = "\\&(\\w|\\d)";
-    private static final Pattern MNEMONIC_PATTERN = Pattern.compile(MNEMONIC_REG_EXP);
-
-    private String textWithMnemonic;
-    private String textWithoutMnemonic;
-    private Integer mnemonic;
-    private Integer mnemonicIndex;
+    private final String textWithMnemonic;
+    private final String textWithoutMnemonic;
+    private final Integer mnemonic;
+    private final Integer mnemonicIndex;
 
     public TextWithMnemonic(final String textWithMnemonic) {
         Validate.notNull(textWithMnemonic, "Text can not be null");
         this.textWithMnemonic = textWithMnemonic;
-        Matcher matcher = MNEMONIC_PATTERN.matcher(textWithMnemonic);
-        if (matcher.find()) {
-            String mnemonicCharacter = matcher.group(1);
-            mnemonicIndex = matcher.start(1) - 1;
-            mnemonic = (int)Character.toUpperCase(mnemonicCharacter.charAt(0));
-            if (matcher.find()) {
-                throw new IllegalArgumentException("Only one mnemonic per string allowed: " + textWithMnemonic);
+        StringBuilder text = null;
+        Integer foundMnemonic = null;
+        Integer foundIndex = null;
+        int length = textWithMnemonic.length();
+        for (int i = 0; i < length; i++) {
+            char c = textWithMnemonic.charAt(i);
+            if (c == '&' && i + 1 < length && isMnemonicCharacter(textWithMnemonic.charAt(i + 1))) {
+                if (foundMnemonic != null) {
+                    throw new IllegalArgumentException("Only one mnemonic per string allowed: " + textWithMnemonic);
+                }
+                if (text == null) {
+                    text = new StringBuilder(length - 1).append(textWithMnemonic, 0, i);
+                }
+                foundIndex = i;
+                foundMnemonic = (int) Character.toUpperCase(textWithMnemonic.charAt(i + 1));
+            } else if (text != null) {
+                text.append(c);
             }
         }
-        textWithoutMnemonic = matcher.replaceAll("$1");
+        textWithoutMnemonic = text == null ? textWithMnemonic : text.toString();
+        mnemonic = foundMnemonic;
+        mnemonicIndex = foundIndex;
+    }
+
+    /**
+     * Returns a shared instance for the text, parsing it only the first time it's seen.
+     *
+     * @param textWithMnemonic the text. May not be {@code null}.
+     * @return the parsed text.
+     */
+    public static TextWithMnemonic valueOf(final String textWithMnemonic) {
+        Validate.notNull(textWithMnemonic, "Text can not be null");
+        TextWithMnemonic parsed = INTERNED.get(textWithMnemonic);
+        if (parsed == null) {
+            parsed = new TextWithMnemonic(textWithMnemonic);
+            if (INTERNED.size() >= MAX_INTERNED) {
+                INTERNED.clear();
+            }
+            TextWithMnemonic existing = INTERNED.putIfAbsent(textWithMnemonic, parsed);
+            if (existing != null) {
+                parsed = existing;
+            }
+        }
+        return parsed;
+    }
+
+    private static boolean isMnemonicCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
     }
 
     public String getTextWithMnemonic() {
@@ -69,17 +106,18 @@ public final class TextWithMnemonic {
 
     @Override
     public boolean equals(Object other) {
-        return other != null && other.getClass().equals(getClass()) && EqualsBuilder.reflectionEquals(this, other);
+        // all other fields are derived from the text
+        return other instanceof TextWithMnemonic && textWithMnemonic.equals(((TextWithMnemonic) other).textWithMnemonic);
     }
 
     @Override
     public int hashCode() {
-        return HashCodeBuilder.reflectionHashCode(this);
+        return textWithMnemonic.hashCode();
     }
 
     @Override
     public String toString() {
-        return ToStringBuilder.reflectionToString(this);
+        return "TextWithMnemonic[textWithMnemonic=" + textWithMnemonic + ",textWithoutMnemonic=" + textWithoutMnemonic
+                + ",mnemonic=" + mnemonic + ",mnemonicIndex=" + mnemonicIndex + "]";
     }
-
-}
\ No newline at end of file
+}
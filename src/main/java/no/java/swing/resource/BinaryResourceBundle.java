@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * A resource bundle backed by the compact binary format written by {@link BinaryResourceCompiler}.
+ * <p/>
+ * The format is a header, a key table sorted by key, and a deduplicated string pool:
+ * <pre>
+ * int magic, int version, int keyCount, int stringCount
+ * keyCount * (int keyIndex, int valueIndex)
+ * stringCount * int offset
+ * stringCount * (int byteLength, UTF-8 bytes)
+ * </pre>
+ * Files on the file system are memory mapped, so only the pages holding keys that are looked up are read.
+ * Strings are decoded on first access.
+ */
+class BinaryResourceBundle extends ResourceBundle {
+    static final String EXTENSION = "rbin";
+    static final int MAGIC = 0x5242494e; // "RBIN"
+    static final int VERSION = 1;
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int HEADER_SIZE = 16;
+
+    private final ByteBuffer buffer;
+    private final int keyCount;
+    private final int stringOffsets;
+    private final int stringData;
+    private final String[] strings;
+
+    BinaryResourceBundle(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a binary resource bundle of version " + VERSION);
+        }
+        keyCount = buffer.getInt(8);
+        int stringCount = buffer.getInt(12);
+        stringOffsets = HEADER_SIZE + keyCount * 8;
+        stringData = stringOffsets + stringCount * 4;
+        strings = new String[stringCount];
+    }
+
+    static BinaryResourceBundle open(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                FileInputStream stream = new FileInputStream(new File(url.toURI()));
+                try {
+                    FileChannel channel = stream.getChannel();
+                    return new BinaryResourceBundle(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                } finally {
+                    stream.close();
+                }
+            } catch (URISyntaxException ignore) {
+                // read it as a stream instead
+            }
+        }
+        InputStream stream = url.openStream();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = stream.read(chunk)) != -1) {
+                bytes.write(chunk, 0, read);
+            }
+            return new BinaryResourceBundle(ByteBuffer.wrap(bytes.toByteArray()));
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Override
+    protected Object handleGetObject(String key) {
+        int low = 0;
+        int high = keyCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = getString(buffer.getInt(HEADER_SIZE + mid * 8)).compareTo(key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return getString(buffer.getInt(HEADER_SIZE + mid * 8 + 4));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected Set<String> handleKeySet() {
+        Set<String> keys = new LinkedHashSet<String>(keyCount * 2);
+        for (int i = 0; i < keyCount; i++) {
+            keys.add(getString(buffer.getInt(HEADER_SIZE + i * 8)));
+        }
+        return keys;
+    }
+
+    @Override
+    public Enumeration<String> getKeys() {
+        Set<String> keys = new LinkedHashSet<String>(handleKeySet());
+        if (parent != null) {
+            keys.addAll(Collections.list(parent.getKeys()));
+        }
+        return Collections.enumeration(keys);
+    }
+
+    private String getString(int index) {
+        // Racy but benign, strings are immutable and decoding is idempotent
+        String string = strings[index];
+        if (string == null) {
+            int offset = stringData + buffer.getInt(stringOffsets + index * 4);
+            byte[] bytes = new byte[buffer.getInt(offset)];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + 4);
+            view.get(bytes);
+            string = new String(bytes, UTF_8);
+            strings[index] = string;
+        }
+        return string;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Build time compiler from <code>.properties</code> bundles to the binary format read by {@link BinaryResourceBundle}.
+ * <p/>
+ * Every properties file below the source directory is compiled into a <code>.rbin</code> file with the same relative
+ * path in the output directory. Each compiled file holds only the keys of its own locale, as {@link ResourceMapImpl}
+ * chains the maps of a bundle's locales and shares inherited keys with the parent map. <code>${...}</code> references
+ * are resolved at build time, unless the value depends on a key overridden by a more specific locale, in which case
+ * the value is kept as is and resolved by the runtime chain.
+ * <p/>
+ * Run it after resources are copied, for example with the exec-maven-plugin in the <code>process-resources</code> phase:
+ * <pre>
+ * java no.java.swing.resource.BinaryResourceCompiler src/main/resources target/classes
+ * </pre>
+ * {@link ResourceMapLoader} picks the compiled files up automatically and falls back to the properties files.
+ */
+public final class BinaryResourceCompiler {
+    private static final String PROPERTIES = ".properties";
+    private static final Set<String> LANGUAGES = new HashSet<String>(Arrays.asList(Locale.getISOLanguages()));
+    private static final Set<String> COUNTRIES = new HashSet<String>(Arrays.asList(Locale.getISOCountries()));
+    private static final Pattern AREA_CODE = Pattern.compile("[0-9]{3}");
+
+    private BinaryResourceCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BinaryResourceCompiler <source directory> <output directory>");
+            System.exit(1);
+        }
+        compile(new File(args[0]), new File(args[1]));
+    }
+
+    /**
+     * Compiles all properties files below a directory.
+     *
+     * @param sourceDirectory directory to search for properties files.
+     * @param outputDirectory directory to write the compiled files to.
+     * @return the number of compiled files.
+     * @throws IOException if reading or writing fails.
+     */
+    public static int compile(File sourceDirectory, File outputDirectory) throws IOException {
+        List<String> stems = new ArrayList<String>();
+        findPropertiesFiles(sourceDirectory, "", stems);
+        Map<String, Properties> ownProperties = new HashMap<String, Properties>();
+        Map<String, List<String>> chains = new HashMap<String, List<String>>();
+        for (String stem : stems) {
+            ownProperties.put(stem, load(new File(sourceDirectory, stem + PROPERTIES)));
+            chains.put(stem, getLocaleChain(sourceDirectory, stem));
+        }
+        for (String stem : stems) {
+            Properties properties = new Properties();
+            for (String bundle : chains.get(stem)) {
+                properties.putAll(ownProperties.get(bundle));
+            }
+            // Keys overridden by more specific locales, values referring to them must be resolved in those locales
+            Set<String> overridden = new HashSet<String>();
+            for (String other : stems) {
+                if (!other.equals(stem) && chains.get(other).contains(stem)) {
+                    overridden.addAll(ownProperties.get(other).stringPropertyNames());
+                }
+            }
+            File output = new File(outputDirectory, stem + "." + BinaryResourceBundle.EXTENSION);
+            if (!output.getParentFile().isDirectory() && !output.getParentFile().mkdirs()) {
+                throw new IOException("Could not create directory " + output.getParentFile());
+            }
+            write(resolve(properties, ownProperties.get(stem).stringPropertyNames(), overridden), output);
+        }
+        return stems.size();
+    }
+
+    private static void findPropertiesFiles(File directory, String prefix, List<String> stems) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                findPropertiesFiles(file, prefix + file.getName() + "/", stems);
+            } else if (file.getName().endsWith(PROPERTIES)) {
+                stems.add(prefix + file.getName().substring(0, file.getName().length() - PROPERTIES.length()));
+            }
+        }
+    }
+
+    /**
+     * Returns the bundle and its parent locale bundles, most general first, in the order of the candidate locales
+     * {@link ResourceMapLoader} chains at runtime. For <code>texts_no_NO</code> that is <code>texts</code>,
+     * <code>texts_nb</code>, <code>texts_no</code>, <code>texts_nb_NO</code> and <code>texts_no_NO</code>, for those
+     * files that exist.
+     */
+    private static List<String> getLocaleChain(File sourceDirectory, String stem) {
+        int nameStart = stem.lastIndexOf('/') + 1;
+        String[] segments = stem.substring(nameStart).split("_", -1);
+        for (int i = 1; i < segments.length; i++) {
+            Locale locale = toLocale(segments, i);
+            if (locale == null) {
+                continue;
+            }
+            String baseName = stem.substring(0, nameStart) + join(segments, 0, i);
+            ResourceBundle.Control control = BinaryResourceControl.INSTANCE;
+            LinkedList<String> chain = new LinkedList<String>();
+            for (Locale candidate : control.getCandidateLocales(baseName, locale)) {
+                String bundle = control.toBundleName(baseName, candidate);
+                if (!bundle.equals(stem) && new File(sourceDirectory, bundle + PROPERTIES).isFile()) {
+                    chain.addFirst(bundle);
+                }
+            }
+            chain.addLast(stem);
+            return chain;
+        }
+        return Collections.singletonList(stem);
+    }
+
+    /**
+     * Returns the locale named by the file name segments from the index, or {@code null} if they don't name a locale.
+     * The first segment must be a known ISO 639 language code, so that base names like <code>button_bar</code> are
+     * not taken for a bundle of another locale.
+     */
+    private static Locale toLocale(String[] segments, int index) {
+        String language = segments[index];
+        String country = index + 1 < segments.length ? segments[index + 1] : "";
+        String variant = index + 2 < segments.length ? join(segments, index + 2, segments.length) : "";
+        if (!LANGUAGES.contains(language)
+                || country.length() > 0 && !COUNTRIES.contains(country) && !AREA_CODE.matcher(country).matches()
+                || index + 1 < segments.length && country.length() == 0 && variant.length() == 0
+                || index + 2 < segments.length && variant.length() == 0) {
+            return null;
+        }
+        return new Locale(language, country, variant);
+    }
+
+    private static String join(String[] segments, int start, int end) {
+        StringBuilder builder = new StringBuilder(segments[start]);
+        for (int i = start + 1; i < end; i++) {
+            builder.append('_').append(segments[i]);
+        }
+        return builder.toString();
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream stream = new FileInputStream(file);
+        try {
+            properties.load(stream);
+        } finally {
+            stream.close();
+        }
+        return properties;
+    }
+
+    private static SortedMap<String, String> resolve(final Properties properties, Set<String> ownKeys, Set<String> overridden) {
+        ResourceMapImpl resourceMap = new ResourceMapImpl(new ResourceBundle() {
+            @Override
+            protected Object handleGetObject(String key) {
+                return properties.getProperty(key);
+            }
+
+            @Override
+            public Enumeration<String> getKeys() {
+                return Collections.enumeration(properties.stringPropertyNames());
+            }
+        });
+        SortedMap<String, String> resolved = new TreeMap<String, String>();
+        for (String key : ownKeys) {
+            if (refersTo(properties, key, overridden, new HashSet<String>())) {
+                resolved.put(key, properties.getProperty(key));
+            } else {
+                String value = resourceMap.getObject(key, String.class);
+                // Escape the result so it is not resolved again when read
+                resolved.put(key, value == null ? "${null}" : value.replace("${", "\\${"));
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns {@code true} if the value of the key refers to any of the given keys, directly or through other keys.
+     */
+    private static boolean refersTo(Properties properties, String key, Set<String> keys, Set<String> visited) {
+        String value = properties.getProperty(key);
+        if (value == null || !visited.add(key)) {
+            return false;
+        }
+        ResourceTemplate template = ResourceTemplate.compile(value);
+        for (int i = 0; i < template.size(); i++) {
+            if (template.isReference(i)) {
+                String reference = template.getSegment(i);
+                if (keys.contains(reference) || refersTo(properties, reference, keys, visited)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void write(SortedMap<String, String> entries, File output) throws IOException {
+        Map<String, Integer> pool = new LinkedHashMap<String, Integer>();
+        int[] table = new int[entries.size() * 2];
+        int index = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            table[index++] = intern(pool, entry.getKey());
+            table[index++] = intern(pool, entry.getValue());
+        }
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+        try {
+            stream.writeInt(BinaryResourceBundle.MAGIC);
+            stream.writeInt(BinaryResourceBundle.VERSION);
+            stream.writeInt(entries.size());
+            stream.writeInt(pool.size());
+            for (int value : table) {
+                stream.writeInt(value);
+            }
+            List<byte[]> encoded = new ArrayList<byte[]>(pool.size());
+            int offset = 0;
+            for (String string : pool.keySet()) {
+                byte[] bytes = string.getBytes(BinaryResourceBundle.UTF_8);
+                encoded.add(bytes);
+                stream.writeInt(offset);
+                offset += 4 + bytes.length;
+            }
+            for (byte[] bytes : encoded) {
+                stream.writeInt(bytes.length);
+                stream.write(bytes);
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static int intern(Map<String, Integer> pool, String string) {
+        Integer index = pool.get(string);
+        if (index == null) {
+            index = pool.size();
+            pool.put(string, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * Resource bundle control that prefers bundles compiled by {@link BinaryResourceCompiler} and otherwise loads
+ * bundles the default way.
+ */
+class BinaryResourceControl extends ResourceBundle.Control {
+    static final BinaryResourceControl INSTANCE = new BinaryResourceControl();
+    private static final String FORMAT = "no.java.swing." + BinaryResourceBundle.EXTENSION;
+    private static final List<String> FORMATS = Collections.unmodifiableList(
+            Arrays.asList(FORMAT, "java.class", "java.properties")
+    );
+
+    private BinaryResourceControl() {
+    }
+
+    @Override
+    public List<String> getFormats(String baseName) {
+        return FORMATS;
+    }
+
+    @Override
+    public ResourceBundle newBundle(String baseName, Locale locale, String format, ClassLoader loader, boolean reload)
+            throws IllegalAccessException, InstantiationException, IOException {
+        if (!FORMAT.equals(format)) {
+            return super.newBundle(baseName, locale, format, loader, reload);
+        }
+        URL resource = loader.getResource(toResourceName(toBundleName(baseName, locale), BinaryResourceBundle.EXTENSION));
+        return resource == null ? null : BinaryResourceBundle.open(resource);
+    }
+}
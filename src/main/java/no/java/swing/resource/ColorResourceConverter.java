@@ -24,9 +24,9 @@ import java.awt.Color;
 /**
  * @author Erlend Hamnaberg, Bouvet ASA
  */
-public class ColorResourceConverter implements ResourceConverter<Color> {
+public class ColorResourceConverter extends InterningResourceConverter<Color> {
     @Override
-    public Color convert(String value) {
+    protected Color parse(String value) {
         if (value.startsWith("#") || StringUtils.isNumeric(value)) {
             try {
                 return Color.decode(value);
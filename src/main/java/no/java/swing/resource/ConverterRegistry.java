@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import no.java.swing.TextWithMnemonic;
+import org.apache.commons.lang.ClassUtils;
+import org.apache.commons.lang.Validate;
+
+import javax.swing.ImageIcon;
+import javax.swing.KeyStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the converters used by resource maps to convert resource strings to typed values.
+ * <p/>
+ * A converter registered for a type also serves lookups for its supertypes and interfaces, so the converter
+ * registered for {@link ImageIcon} is used for {@link javax.swing.Icon} as well. If several registered types match,
+ * the first one registered wins. Primitive types are looked up as their wrapper types.
+ * <p/>
+ * The default registry contains converters for strings, booleans, integers, longs, colors, fonts, icons,
+ * key strokes and texts with mnemonics, plus any converters contributed by {@link ResourceConverterProvider}s.
+ */
+public final class ConverterRegistry {
+    private static final ResourceConverter<?> NO_CONVERTER = new StringResourceConverter();
+
+    private final Map<Class<?>, ResourceConverter<?>> converters = new LinkedHashMap<Class<?>, ResourceConverter<?>>();
+    private final ConcurrentMap<Class<?>, ResourceConverter<?>> resolved = new ConcurrentHashMap<Class<?>, ResourceConverter<?>>();
+
+    public static ConverterRegistry getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Registers a converter for a type, replacing any converter previously registered for that exact type.
+     *
+     * @param type      the type produced by the converter. May not be {@code null}.
+     * @param converter the converter. May not be {@code null}.
+     */
+    public synchronized <T> void register(Class<T> type, ResourceConverter<? extends T> converter) {
+        Validate.notNull(type, "Type may not be null");
+        Validate.notNull(converter, "Converter may not be null");
+        converters.put(type, converter);
+        resolved.clear();
+    }
+
+    /**
+     * Finds the converter for a type.
+     *
+     * @param type the requested type. May not be {@code null}.
+     * @return the converter, or {@code null} if no registered converter produces the type.
+     */
+    @SuppressWarnings({"unchecked"})
+    public <T> ResourceConverter<T> find(Class<T> type) {
+        Validate.notNull(type, "Type may not be null");
+        ResourceConverter<?> converter = resolved.get(type);
+        if (converter == null) {
+            converter = resolve(type);
+        }
+        return converter == NO_CONVERTER ? null : (ResourceConverter<T>) converter;
+    }
+
+    private synchronized ResourceConverter<?> resolve(Class<?> type) {
+        Class<?> lookupType = type.isPrimitive() ? ClassUtils.primitiveToWrapper(type) : type;
+        ResourceConverter<?> converter = converters.get(lookupType);
+        if (converter == null) {
+            converter = NO_CONVERTER;
+            for (Map.Entry<Class<?>, ResourceConverter<?>> entry : converters.entrySet()) {
+                if (lookupType.isAssignableFrom(entry.getKey())) {
+                    converter = entry.getValue();
+                    break;
+                }
+            }
+        }
+        resolved.put(type, converter);
+        return converter;
+    }
+
+    private static class DefaultHolder {
+        private static final ConverterRegistry INSTANCE = createDefault();
+
+        private static ConverterRegistry createDefault() {
+            ConverterRegistry registry = new ConverterRegistry();
+            registry.register(String.class, new StringResourceConverter());
+            registry.register(Boolean.class, new BooleanResourceConverter());
+            registry.register(Integer.class, new IntegerResourceConverter());
+            registry.register(Long.class, new LongResourceConverter());
+            registry.register(Color.class, new ColorResourceConverter());
+            registry.register(Font.class, new FontResourceConverter());
+            registry.register(KeyStroke.class, new KeyStrokeResourceConverter());
+            registry.register(ImageIcon.class, new IconResourceConverter());
+            registry.register(TextWithMnemonic.class, new TextWithMnemonicResourceConverter());
+            for (ResourceConverterProvider provider : ServiceLoader.load(ResourceConverterProvider.class)) {
+                provider.registerConverters(registry);
+            }
+            return registry;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.UnknownFormatConversionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link Formatter} format string parsed once into literal text and format specifiers.
+ * <p/>
+ * Formatting a template gives the same result as {@link String#format(String, Object...)}, but only appends the
+ * arguments. The flags, width and precision of each specifier are parsed up front, and the general, character,
+ * integral and decimal conversions are appended directly. Specifiers the {@link Formatter} would reject, date/time,
+ * scientific and grouped conversions, and {@link Formattable} arguments are passed on to a {@link Formatter} writing
+ * to the target, so they give the same output and exceptions.
+ */
+final class FormatTemplate {
+    private static final Pattern SPECIFIER = Pattern.compile("%(\\d+\\$)?([-#+ 0,(<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])");
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    // Digits beyond this are not the same in every JDK's shortest representation of a double
+    private static final int EXACT_DOUBLE_DIGITS = 15;
+
+    private final String pattern;
+    private final Object[] segments;
+
+    private FormatTemplate(String pattern, Object[] segments) {
+        this.pattern = pattern;
+        this.segments = segments;
+    }
+
+    static FormatTemplate compile(String pattern) {
+        List<Object> segments = new ArrayList<Object>();
+        Matcher matcher = SPECIFIER.matcher(pattern);
+        int ordinaryIndex = 0;
+        int lastIndex = -1;
+        int start = 0;
+        while (start < pattern.length()) {
+            int percent = pattern.indexOf('%', start);
+            if (percent == -1) {
+                segments.add(pattern.substring(start));
+                break;
+            }
+            if (percent > start) {
+                segments.add(pattern.substring(start, percent));
+            }
+            if (!matcher.find(percent) || matcher.start() != percent) {
+                String conversion = percent + 1 < pattern.length() ? String.valueOf(pattern.charAt(percent + 1)) : "%";
+                throw new UnknownFormatConversionException(conversion);
+            }
+            String conversion = matcher.group(6);
+            String flags = matcher.group(2) == null ? "" : matcher.group(2);
+            if (conversion.equals("%")) {
+                segments.add(matcher.group(3) == null ? "%" : String.format(matcher.group()));
+            } else if (conversion.equals("n")) {
+                segments.add(LINE_SEPARATOR);
+            } else {
+                int index;
+                if (matcher.group(1) != null) {
+                    index = Integer.parseInt(matcher.group(1).substring(0, matcher.group(1).length() - 1)) - 1;
+                } else if (flags.indexOf('<') != -1) {
+                    index = lastIndex;
+                } else {
+                    index = ordinaryIndex++;
+                }
+                lastIndex = index;
+                segments.add(new Specifier(matcher, flags.replace("<", ""), index));
+            }
+            start = matcher.end();
+        }
+        return new FormatTemplate(pattern, segments.toArray());
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    String format(Object... args) {
+        return appendTo(new StringBuilder(pattern.length() + 16), args).toString();
+    }
+
+    StringBuilder appendTo(StringBuilder target, Object... args) {
+        Formatter formatter = null;
+        DecimalFormatSymbols symbols = null;
+        for (Object segment : segments) {
+            if (segment instanceof String) {
+                target.append((String) segment);
+                continue;
+            }
+            Specifier specifier = (Specifier) segment;
+            if (specifier.index < 0 || (args != null && specifier.index >= args.length)) {
+                throw new MissingFormatArgumentException(specifier.source);
+            }
+            // Like Formatter, a null argument array formats every specifier with a null argument
+            Object arg = args == null ? null : args[specifier.index];
+            if (symbols == null && specifier.isLocalized(arg)) {
+                symbols = DecimalFormatSymbols.getInstance();
+            }
+            if (!specifier.appendTo(target, arg, symbols)) {
+                if (formatter == null) {
+                    formatter = new Formatter(target);
+                }
+                formatter.format(specifier.text, arg);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * A parsed format specifier. {@link #appendTo} appends the argument directly where that is known to give the same
+     * result as the {@link Formatter}, and otherwise returns {@code false} so the {@link #text} is formatted instead.
+     */
+    private static class Specifier {
+        private final String source;
+        private final String text;
+        private final int index;
+        private final char conversion;
+        private final int width;
+        private final int precision;
+        private final boolean leftJustify;
+        private final boolean zeroPad;
+        private final boolean alternate;
+        private final boolean plus;
+        private final boolean space;
+        private final boolean direct;
+
+        private Specifier(Matcher matcher, String flags, int index) {
+            this.index = index;
+            source = matcher.group();
+            text = "%" + flags + nullToEmpty(matcher.group(3)) + nullToEmpty(matcher.group(4))
+                    + nullToEmpty(matcher.group(5)) + matcher.group(6);
+            conversion = matcher.group(5) == null ? matcher.group(6).charAt(0) : 't';
+            width = matcher.group(3) == null ? -1 : Integer.parseInt(matcher.group(3));
+            precision = matcher.group(4) == null ? -1 : Integer.parseInt(matcher.group(4).substring(1));
+            leftJustify = flags.indexOf('-') != -1;
+            zeroPad = flags.indexOf('0') != -1;
+            alternate = flags.indexOf('#') != -1;
+            plus = flags.indexOf('+') != -1;
+            space = flags.indexOf(' ') != -1;
+            direct = isDirect(flags);
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+
+        /**
+         * Returns {@code true} if the conversion and flags are supported directly. Anything else, including every
+         * combination the {@link Formatter} rejects, is left to the formatter.
+         */
+        private boolean isDirect(String flags) {
+            if ((leftJustify || zeroPad) && width == -1 || leftJustify && zeroPad || plus && space) {
+                return false;
+            }
+            switch (conversion) {
+                case 's':
+                case 'b':
+                    return onlyFlags(flags, "-");
+                case 'c':
+                    return onlyFlags(flags, "-") && precision == -1;
+                case 'd':
+                    return onlyFlags(flags, "-0+ ") && precision == -1;
+                case 'f':
+                    return onlyFlags(flags, "-0+ ");
+                case 'x':
+                case 'X':
+                case 'o':
+                    return onlyFlags(flags, "-0#") && precision == -1;
+                default:
+                    return false;
+            }
+        }
+
+        private static boolean onlyFlags(String flags, String supported) {
+            for (int i = 0; i < flags.length(); i++) {
+                if (supported.indexOf(flags.charAt(i)) == -1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isLocalized(Object arg) {
+            return direct && (conversion == 'd' || conversion == 'f') && arg != null;
+        }
+
+        private boolean appendTo(StringBuilder target, Object arg, DecimalFormatSymbols symbols) {
+            if (!direct) {
+                return false;
+            }
+            switch (conversion) {
+                case 's':
+                    if (arg instanceof Formattable) {
+                        return false;
+                    }
+                    appendJustified(target, truncate(String.valueOf(arg)));
+                    return true;
+                case 'b':
+                    appendJustified(target, truncate(arg == null ? "false" : arg instanceof Boolean ? arg.toString() : "true"));
+                    return true;
+                case 'c':
+                    return appendCharacter(target, arg);
+                case 'd':
+                    return appendInteger(target, arg, symbols);
+                case 'x':
+                case 'X':
+                case 'o':
+                    return appendUnsigned(target, arg);
+                case 'f':
+                    return appendDecimal(target, arg, symbols);
+                default:
+                    return false;
+            }
+        }
+
+        private String truncate(String value) {
+            return precision != -1 && precision < value.length() ? value.substring(0, precision) : value;
+        }
+
+        private boolean appendCharacter(StringBuilder target, Object arg) {
+            int codePoint;
+            if (arg == null) {
+                appendJustified(target, "null");
+                return true;
+            } else if (arg instanceof Character) {
+                codePoint = (Character) arg;
+            } else if (arg instanceof Byte || arg instanceof Short || arg instanceof Integer) {
+                codePoint = ((Number) arg).intValue();
+            } else {
+                return false;
+            }
+            if (!Character.isValidCodePoint(codePoint)) {
+                return false;
+            }
+            appendJustified(target, new String(Character.toChars(codePoint)));
+            return true;
+        }
+
+        private boolean appendInteger(StringBuilder target, Object arg, DecimalFormatSymbols symbols) {
+            String digits;
+            if (arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte
+                    || arg instanceof BigInteger) {
+                digits = arg.toString();
+            } else {
+                return false;
+            }
+            boolean negative = digits.startsWith("-");
+            appendNumber(target, negative, negative ? digits.substring(1) : digits, symbols);
+            return true;
+        }
+
+        private boolean appendUnsigned(StringBuilder target, Object arg) {
+            long value;
+            int bits;
+            if (arg instanceof Integer) {
+                value = (Integer) arg;
+                bits = 32;
+            } else if (arg instanceof Long) {
+                value = (Long) arg;
+                bits = 64;
+            } else if (arg instanceof Short) {
+                value = (Short) arg;
+                bits = 16;
+            } else if (arg instanceof Byte) {
+                value = (Byte) arg;
+                bits = 8;
+            } else {
+                return false;
+            }
+            if (bits < 64) {
+                value &= (1L << bits) - 1;
+            }
+            String digits = conversion == 'o' ? Long.toOctalString(value) : Long.toHexString(value);
+            String prefix = !alternate ? "" : conversion == 'o' ? "0" : "0x";
+            StringBuilder result = new StringBuilder(prefix);
+            if (zeroPad) {
+                for (int i = prefix.length() + digits.length(); i < width; i++) {
+                    result.append('0');
+                }
+            }
+            result.append(digits);
+            String formatted = result.toString();
+            appendJustified(target, conversion == 'X' ? formatted.toUpperCase(Locale.ENGLISH) : formatted);
+            return true;
+        }
+
+        private boolean appendDecimal(StringBuilder target, Object arg, DecimalFormatSymbols symbols) {
+            int scale = precision == -1 ? 6 : precision;
+            BigDecimal value;
+            boolean negative;
+            if (arg instanceof Double || arg instanceof Float) {
+                double number = ((Number) arg).doubleValue();
+                if (Double.isNaN(number) || Double.isInfinite(number)) {
+                    return false;
+                }
+                negative = number < 0 || number == 0 && 1 / number < 0;
+                // The formatter rounds the shortest decimal representation, not the exact binary value
+                value = new BigDecimal(Double.toString(Math.abs(number)));
+                if (value.precision() - value.scale() + scale + 1 > EXACT_DOUBLE_DIGITS) {
+                    return false;
+                }
+            } else if (arg instanceof BigDecimal) {
+                value = (BigDecimal) arg;
+                negative = value.signum() < 0;
+                value = value.abs();
+            } else {
+                return false;
+            }
+            appendNumber(target, negative, value.setScale(scale, RoundingMode.HALF_UP).toPlainString(), symbols);
+            return true;
+        }
+
+        /**
+         * Appends the sign and the localized digits of a number, zero padded or justified to the width.
+         */
+        private void appendNumber(StringBuilder target, boolean negative, String digits, DecimalFormatSymbols symbols) {
+            StringBuilder result = new StringBuilder(Math.max(width, digits.length() + 1));
+            if (negative) {
+                result.append('-');
+            } else if (plus) {
+                result.append('+');
+            } else if (space) {
+                result.append(' ');
+            }
+            char zero = symbols.getZeroDigit();
+            if (zeroPad) {
+                for (int i = result.length() + digits.length(); i < width; i++) {
+                    result.append(zero);
+                }
+            }
+            for (int i = 0; i < digits.length(); i++) {
+                char c = digits.charAt(i);
+                result.append(c == '.' ? symbols.getDecimalSeparator() : (char) (c - '0' + zero));
+            }
+            appendJustified(target, result.toString());
+        }
+
+        private void appendJustified(StringBuilder target, String value) {
+            int padding = width - value.length();
+            if (leftJustify) {
+                target.append(value);
+            }
+            for (int i = 0; i < padding; i++) {
+                target.append(' ');
+            }
+            if (!leftJustify) {
+                target.append(value);
+            }
+        }
+    }
+}
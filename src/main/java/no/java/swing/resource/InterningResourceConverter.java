@@ -0,0 +1,59 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Base class for converters of immutable values, which returns one shared instance per distinct resource string.
+ * Themes repeat the same few colors and key strokes many times, so parsing each string once saves both time and heap.
+ * <p/>
+ * The cache is cleared when it grows beyond {@value #MAX_ENTRIES} strings, which bounds its size if values are
+ * computed rather than read from bundles.
+ */
+abstract class InterningResourceConverter<T> implements ResourceConverter<T> {
+    private static final int MAX_ENTRIES = 1024;
+
+    private final ConcurrentMap<String, T> interned = new ConcurrentHashMap<String, T>();
+
+    @Override
+    public final T convert(String value) {
+        T converted = interned.get(value);
+        if (converted == null) {
+            converted = parse(value);
+            if (converted != null) {
+                if (interned.size() >= MAX_ENTRIES) {
+                    interned.clear();
+                }
+                T existing = interned.putIfAbsent(value, converted);
+                if (existing != null) {
+                    converted = existing;
+                }
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Parses a resource string that hasn't been converted before.
+     *
+     * @param value the resource string.
+     * @return the converted value, which must be immutable.
+     */
+    protected abstract T parse(String value);
+}
@@ -23,9 +23,11 @@ import java.awt.event.KeyEvent;
 /**
  * @author Erlend Hamnaberg, Bouvet ASA
  */
-public class KeyStrokeResourceConverter implements ResourceConverter<KeyStroke> {
+public class KeyStrokeResourceConverter extends InterningResourceConverter<KeyStroke> {
+    private static volatile String shortcutKey;
+
     @Override
-    public KeyStroke convert(String value) {
+    protected KeyStroke parse(String value) {
         int shortcut = value.indexOf("shortcut");
         if (shortcut != -1) {
             value = value.replace("shortcut", getPlatformSpecificShortCutKey());
@@ -33,8 +35,12 @@ public class KeyStrokeResourceConverter implements ResourceConverter<KeyStroke>
         return KeyStroke.getKeyStroke(value);
     }
 
-    private String getPlatformSpecificShortCutKey() {
-        int mask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
-        return mask == KeyEvent.META_MASK ? "meta" : "ctrl";
+    private static String getPlatformSpecificShortCutKey() {
+        // The toolkit is queried once, a failure (e.g. when headless) is reported again on the next conversion
+        if (shortcutKey == null) {
+            int mask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+            shortcutKey = mask == KeyEvent.META_MASK ? "meta" : "ctrl";
+        }
+        return shortcutKey;
     }
 }
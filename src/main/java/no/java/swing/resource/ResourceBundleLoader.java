@@ -25,7 +25,7 @@ import java.util.concurrent.atomic.AtomicReference;
 public class ResourceBundleLoader {
     public static final String DEFAULT_NAME = "texts";
     private static final AtomicReference<String> bundleName = new AtomicReference<String>(DEFAULT_NAME);
-    private static ResourceBundle bundle;
+    private static volatile ResourceBundle bundle;
 
     public static void setBundleName(String name) {
         bundleName.set(name);
@@ -42,4 +42,11 @@ public class ResourceBundleLoader {
         }
         return bundle;
     }
+
+    /**
+     * Forgets the loaded bundle, so the next {@link #load()} reads it again.
+     */
+    static void reset() {
+        bundle = null;
+    }
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads resource bundles when their files change, for use during development and on deployments where the
+ * bundles are edited in place.
+ * <p/>
+ * The reloader polls the modification time of the <code>.properties</code> and <code>.rbin</code> files backing the
+ * resource maps loaded by {@link ResourceMapLoader}. Only bundles whose files changed are reloaded, and only the
+ * changed keys and the keys referring to them through <code>${...}</code> expressions are invalidated, also in the
+ * maps of child locales inheriting them. A bundle is reloaded from the file that changed, so editing the properties
+ * file takes effect even if a compiled file exists beside it. Bundles loaded from jar files are not watched.
+ */
+public final class ResourceBundleReloader {
+    private static final List<ResourceReloadListener> listeners = new CopyOnWriteArrayList<ResourceReloadListener>();
+    private static final Map<File, Long> timestamps = new HashMap<File, Long>();
+    private static final Map<ResourceMapImpl, List<File>> watchedFiles = new HashMap<ResourceMapImpl, List<File>>();
+    private static ScheduledExecutorService executor;
+
+    private ResourceBundleReloader() {
+    }
+
+    /**
+     * Starts polling for changes in a background thread. Does nothing if the reloader is already started.
+     *
+     * @param interval time between polls.
+     * @param unit     unit of the interval.
+     */
+    public static synchronized void start(long interval, TimeUnit unit) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ResourceBundleReloader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    checkForChanges();
+                } catch (RuntimeException e) {
+                    // keep polling, the next edit may fix the bundle
+                    e.printStackTrace();
+                }
+            }
+        }, 0, interval, unit);
+    }
+
+    public static synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    public static void addReloadListener(ResourceReloadListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeReloadListener(ResourceReloadListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reloads the loaded bundles whose files changed since the previous check. The first check of a bundle only
+     * records the modification times of its files.
+     */
+    public static void checkForChanges() {
+        synchronized (timestamps) {
+            boolean cacheCleared = false;
+            Map<ResourceMapImpl, Set<String>> reloaded = new HashMap<ResourceMapImpl, Set<String>>();
+            // Parents come first, so their changes are known when their children are checked
+            for (ResourceMapImpl map : ResourceMapLoader.getLoadedLevels()) {
+                Set<String> changedKeys = new HashSet<String>();
+                File changedFile = getChangedFile(getWatchedFiles(map));
+                if (changedFile != null) {
+                    if (!cacheCleared) {
+                        ResourceBundle.clearCache(ResourceMapLoader.class.getClassLoader());
+                        ResourceBundleLoader.reset();
+                        cacheCleared = true;
+                    }
+                    try {
+                        changedKeys.addAll(map.reload(loadBundle(changedFile)));
+                    } catch (IOException e) {
+                        // keep the current values, the next edit may fix the file
+                        e.printStackTrace();
+                    }
+                }
+                Set<String> parentKeys = reloaded.get(map.getParent());
+                if (parentKeys != null) {
+                    for (String key : parentKeys) {
+                        if (!map.ownsKey(key)) {
+                            changedKeys.add(key);
+                        }
+                    }
+                }
+                if (!changedKeys.isEmpty()) {
+                    map.invalidateKeys(changedKeys);
+                    reloaded.put(map, changedKeys);
+                    fireResourcesReloaded(map, Collections.unmodifiableSet(changedKeys));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the most recently modified of the files that changed since the previous check, or {@code null}.
+     */
+    private static File getChangedFile(List<File> files) {
+        File changed = null;
+        for (File file : files) {
+            long modified = file.lastModified();
+            Long previous = timestamps.put(file, modified);
+            if (previous != null && previous != modified && (changed == null || modified > changed.lastModified())) {
+                changed = file;
+            }
+        }
+        return changed;
+    }
+
+    private static ResourceBundle loadBundle(File file) throws IOException {
+        if (file.getName().endsWith("." + BinaryResourceBundle.EXTENSION)) {
+            return BinaryResourceBundle.open(file.toURI().toURL());
+        }
+        InputStream stream = new FileInputStream(file);
+        try {
+            return new PropertyResourceBundle(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static List<File> getWatchedFiles(ResourceMapImpl map) {
+        List<File> files = watchedFiles.get(map);
+        if (files == null) {
+            files = new ArrayList<File>();
+            BinaryResourceControl control = BinaryResourceControl.INSTANCE;
+            ClassLoader loader = ResourceMapLoader.class.getClassLoader();
+            String bundleName = control.toBundleName(map.getBaseName(), map.getLocale());
+            for (String suffix : Arrays.asList("properties", BinaryResourceBundle.EXTENSION)) {
+                URL resource = loader.getResource(control.toResourceName(bundleName, suffix));
+                if (resource != null && "file".equals(resource.getProtocol())) {
+                    try {
+                        files.add(new File(resource.toURI()));
+                    } catch (URISyntaxException ignore) {
+                        // not watchable
+                    }
+                }
+            }
+            watchedFiles.put(map, files);
+        }
+        return files;
+    }
+
+    private static void fireResourcesReloaded(final ResourceMap resourceMap, final Set<String> changedKeys) {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                for (ResourceReloadListener listener : listeners) {
+                    listener.resourcesReloaded(resourceMap, changedKeys);
+                }
+            }
+        });
+    }
+}
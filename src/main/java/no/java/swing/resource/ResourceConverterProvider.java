@@ -0,0 +1,26 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+/**
+ * Service provider interface for contributing converters to the {@link ConverterRegistry}.
+ * Implementations are found with {@link java.util.ServiceLoader}, so they are listed in
+ * <code>META-INF/services/no.java.swing.resource.ResourceConverterProvider</code>.
+ */
+public interface ResourceConverterProvider {
+    void registerConverters(ConverterRegistry registry);
+}
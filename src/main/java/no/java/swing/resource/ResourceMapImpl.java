@@ -26,71 +26,308 @@ import javax.swing.KeyStroke;
 import java.awt.Color;
 import java.awt.Font;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * Resource map backed by a resource bundle, with caches for resolved and converted values.
+ * <p/>
+ * A map may have a parent map for the parent locale. Its own bundle then holds only the keys defined for its
+ * locale. Inherited keys whose values don't depend on keys overridden in this map are looked up in the parent, so
+ * their converted values, templates and key sets are shared by all locales instead of being duplicated.
+ *
  * @author Erlend Hamnaberg, Bouvet ASA
  */
 class ResourceMapImpl implements ResourceMap {
 
-    private static final Map<Class, ResourceConverter> converterMap = new HashMap<Class, ResourceConverter>();
-    private final ResourceBundle bundle;
-    private Set<String> keys;
+    private static final Object NULL_VALUE = new Object();
+    private volatile ResourceBundle bundle;
+    private final ResourceMapImpl parent;
+    private final String baseName;
+    private final Locale locale;
+    private final ConcurrentMap<CacheKey, Object> values = new ConcurrentHashMap<CacheKey, Object>();
+    private final ConcurrentMap<CacheKey, Object> conversions;
+    private final ConcurrentMap<String, ResourceTemplate> templates = new ConcurrentHashMap<String, ResourceTemplate>();
+    private final ConcurrentMap<String, Object> resolvedValues = new ConcurrentHashMap<String, Object>();
+    private final ConcurrentMap<String, Set<String>> dependents = new ConcurrentHashMap<String, Set<String>>();
+    private final ConcurrentMap<String, Boolean> sharedKeys = new ConcurrentHashMap<String, Boolean>();
+    private final ConcurrentMap<String, FormatTemplate> formats = new ConcurrentHashMap<String, FormatTemplate>();
+    private volatile Set<String> keys;
 
-    static {
-        converterMap.put(Color.class, new ColorResourceConverter());
-        converterMap.put(KeyStroke.class, new KeyStrokeResourceConverter());
-        converterMap.put(String.class, new StringResourceConverter());
-        converterMap.put(Icon.class, new IconResourceConverter());
-        converterMap.put(ImageIcon.class, new IconResourceConverter());
-        converterMap.put(TextWithMnemonic.class, new TextWithMnemonicResourceConverter());
+    ResourceMapImpl(ResourceBundle bundle) {
+        this(bundle, null, null, null);
     }
 
-    ResourceMapImpl(ResourceBundle bundle) {
+    /**
+     * @param bundle   the bundle holding the keys of this map's own locale.
+     * @param parent   the map of the parent locale, or {@code null}.
+     * @param baseName the base name of the bundle, or {@code null} if unknown.
+     * @param locale   the locale of the bundle, or {@code null} if unknown.
+     */
+    ResourceMapImpl(ResourceBundle bundle, ResourceMapImpl parent, String baseName, Locale locale) {
         this.bundle = bundle;
+        this.parent = parent;
+        this.baseName = baseName;
+        this.locale = locale;
+        conversions = parent != null ? parent.conversions : new ConcurrentHashMap<CacheKey, Object>();
+    }
+
+    ResourceMapImpl getParent() {
+        return parent;
+    }
+
+    String getBaseName() {
+        return baseName;
+    }
+
+    Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Returns the bundle name including the locale suffix, or {@code null} if unknown.
+     */
+    String getBundleName() {
+        if (baseName == null || locale == null || locale.toString().length() == 0) {
+            return baseName;
+        }
+        return baseName + "_" + locale;
+    }
+
+    /**
+     * Returns {@code true} if the key is defined by this map's own bundle, rather than inherited from the parent.
+     */
+    boolean ownsKey(String key) {
+        return bundle.containsKey(key);
     }
 
     @Override
     public Set<String> keySet() {
         if (keys == null) {
-            keys = Collections.unmodifiableSet(new HashSet<String>(Collections.list(bundle.getKeys())));
+            if (parent == null) {
+                keys = Collections.unmodifiableSet(new HashSet<String>(Collections.list(bundle.getKeys())));
+            } else {
+                keys = new ChainedKeySet(Collections.unmodifiableSet(new HashSet<String>(Collections.list(bundle.getKeys()))));
+            }
         }
         return keys;
     }
 
     @Override
     public boolean containsKey(String key) {
-        return bundle.containsKey(key);
+        return bundle.containsKey(key) || (parent != null && parent.containsKey(key));
     }
 
     @Override
     public <T> T getObject(String key, Class<T> type) {
         Validate.notNull(key, "Key may not be null");
         Validate.notNull(type, "Type may not be null");
+        if (ResourceStatistics.isRecording()) {
+            ResourceStatistics.recordLookup(getBundleName());
+            if (!containsKey(key)) {
+                ResourceStatistics.recordMiss(getBundleName(), key);
+            }
+        }
+        return lookup(key, type);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private <T> T lookup(String key, Class<T> type) {
+        CacheKey cacheKey = new CacheKey(key, type);
+        Object value = values.get(cacheKey);
+        if (value == null) {
+            if (isShared(key)) {
+                return parent.lookup(key, type);
+            }
+            value = convert(key, type);
+            Object existing = values.putIfAbsent(cacheKey, value == null ? NULL_VALUE : value);
+            if (existing != null) {
+                value = existing;
+            }
+        }
+        return value == NULL_VALUE ? null : (T) value;
+    }
+
+    /**
+     * Returns {@code true} if the key is inherited from the parent and resolves to the same value there, that is, it
+     * doesn't refer to any key overridden by this map.
+     */
+    private boolean isShared(String key) {
+        if (parent == null) {
+            return false;
+        }
+        Boolean shared = sharedKeys.get(key);
+        if (shared == null) {
+            shared = isShared(key, new HashSet<String>());
+            sharedKeys.put(key, shared);
+        }
+        return shared;
+    }
+
+    private boolean isShared(String key, Set<String> visited) {
+        if (ownsKey(key)) {
+            return false;
+        }
+        if (visited.add(key)) {
+            ResourceTemplate template = parent.getTemplate(key);
+            for (int i = 0; i < template.size(); i++) {
+                if (template.isReference(i) && !isShared(template.getSegment(i), visited)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Discards the cached values of the given key and of all keys referring to it through <code>${key}</code>
+     * expressions, or of all keys if the key is {@code null}. Values are resolved and converted again on the next lookup.
+     *
+     * @param key the resource key, or {@code null}.
+     */
+    void invalidate(String key) {
+        if (key == null) {
+            values.clear();
+            conversions.clear();
+            templates.clear();
+            resolvedValues.clear();
+            dependents.clear();
+            sharedKeys.clear();
+            formats.clear();
+            return;
+        }
+        invalidateKeys(Collections.singleton(key));
+    }
+
+    /**
+     * Discards the cached values of the given keys and of all keys referring to them.
+     *
+     * @param changedKeys the keys whose values changed.
+     * @return the discarded keys.
+     */
+    Set<String> invalidateKeys(Collection<String> changedKeys) {
+        Set<String> affected = new HashSet<String>();
+        for (String key : changedKeys) {
+            templates.remove(key);
+            collectDependents(key, affected);
+        }
+        sharedKeys.clear();
+        keys = null;
+        resolvedValues.keySet().removeAll(affected);
+        for (Iterator<CacheKey> iterator = values.keySet().iterator(); iterator.hasNext();) {
+            if (affected.contains(iterator.next().first)) {
+                iterator.remove();
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Replaces the bundle backing this map. Cached values are not touched, see {@link #invalidateKeys(Collection)}.
+     *
+     * @param newBundle the reloaded bundle.
+     * @return the keys that were added, removed or changed in the bundle.
+     */
+    Set<String> reload(ResourceBundle newBundle) {
+        ResourceBundle oldBundle = bundle;
+        Set<String> allKeys = new HashSet<String>(Collections.list(oldBundle.getKeys()));
+        allKeys.addAll(Collections.list(newBundle.getKeys()));
+        Set<String> changed = new HashSet<String>();
+        for (String key : allKeys) {
+            Object oldValue = oldBundle.containsKey(key) ? oldBundle.getObject(key) : null;
+            Object newValue = newBundle.containsKey(key) ? newBundle.getObject(key) : null;
+            if (oldValue == null ? newValue != null : !oldValue.equals(newValue)) {
+                changed.add(key);
+            }
+        }
+        bundle = newBundle;
+        return changed;
+    }
+
+    /**
+     * Collects the key and the keys referring to it. References through inherited keys, which this map shares with its
+     * parent, are recorded in the parent's maps, so the dependents of the parent locales are followed as well.
+     */
+    private void collectDependents(String key, Set<String> affected) {
+        if (affected.add(key)) {
+            for (ResourceMapImpl map = this; map != null; map = map.parent) {
+                Set<String> referrers = map.dependents.get(key);
+                if (referrers != null) {
+                    for (String referrer : referrers) {
+                        if (map == this || !ownsKey(referrer)) {
+                            collectDependents(referrer, affected);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private <T> Object convert(String key, Class<T> type) {
         if (containsKey(key)) {
             ResourceConverter<T> converter = findConverter(type);
             if (converter == null) {
                 throw new ResourceConversionException("No Converter found for " + type.getName());
             }
-            String value = bundle.getString(key);
-            if (!StringUtils.isBlank(value)) {
-                return converter.convert(evaluateStringExpression(value.trim()));
+            String expression = resolve(key, new LinkedHashSet<String>());
+            if (expression != null) {
+                // Identical values share one converted instance, so the same icon is only loaded once
+                CacheKey conversionKey = new CacheKey(converter, expression);
+                Object converted = conversions.get(conversionKey);
+                if (converted == null) {
+                    if (ResourceStatistics.isRecording()) {
+                        long start = System.nanoTime();
+                        converted = converter.convert(expression);
+                        ResourceStatistics.recordConversion(converter, System.nanoTime() - start);
+                    } else {
+                        converted = converter.convert(expression);
+                    }
+                    if (converted != null) {
+                        Object existing = conversions.putIfAbsent(conversionKey, converted);
+                        if (existing != null) {
+                            converted = existing;
+                        }
+                    }
+                }
+                return converted;
             }
         }
         return null;
     }
 
-    @SuppressWarnings({"unchecked"})
     private <T> ResourceConverter<T> findConverter(Class<T> type) {
-        return converterMap.get(type);
+        return ConverterRegistry.getDefault().find(type);
     }
 
     @Override
     public final String getString(String key, Object... args) {
+        FormatTemplate format = getFormat(key);
+        return format == null ? "" : format.format(args);
+    }
+
+    final StringBuilder appendString(StringBuilder builder, String key, Object... args) {
+        FormatTemplate format = getFormat(key);
+        return format == null ? builder : format.appendTo(builder, args);
+    }
+
+    /**
+     * Returns the parsed format of the key's value, or {@code null} if there is no value. The format is parsed again
+     * only if the resolved value changed, e.g. after a reload.
+     */
+    private FormatTemplate getFormat(String key) {
+        if (isShared(key)) {
+            return parent.getFormat(key);
+        }
         String value = getObject(key, String.class);
         if (value == null) {
-            return "";
+            return null;
         }
-        return String.format(value, args);
+        FormatTemplate format = formats.get(key);
+        if (format == null || !format.getPattern().equals(value)) {
+            format = FormatTemplate.compile(value);
+            formats.put(key, format);
+        }
+        return format;
     }
 
     @Override
@@ -144,47 +381,164 @@ class ResourceMapImpl implements ResourceMap {
         return stroke != null ? stroke.getKeyCode() : null;
     }
 
-    /* Given the following resources:
-    *
-    * hello = Hello
-    * world = World
-    * place = ${world}
-    *
-    * The value of evaluateStringExpression("${hello} ${place}")
-    * would be "Hello World".  The value of ${null} is null.
-    */
-    private String evaluateStringExpression(String expression) {
-        if (expression.trim().equals("${null}")) {
-            return null;
+    /**
+     * Returns the value of the key with all <code>${...}</code> references resolved, or {@code null} if the key is
+     * missing, blank or <code>${null}</code>. Each value is compiled into a {@link ResourceTemplate} once and the
+     * resolved string is cached, so only the first lookup walks the reference chain.
+     *
+     * @param key       the key to resolve.
+     * @param resolving keys currently being resolved, in order, used to detect reference cycles.
+     */
+    private String resolve(String key, LinkedHashSet<String> resolving) {
+        if (isShared(key)) {
+            return parent.resolve(key, resolving);
         }
-        StringBuilder result = new StringBuilder();
-        int startIndex = 0;
-        int endIndex;
-        while ((endIndex = expression.indexOf("${", startIndex)) != -1) {
-            if ((endIndex == 0) || ((endIndex > 0) && (expression.charAt(endIndex - 1) != '\\'))) {
-                int expressionEnd = expression.indexOf("}", endIndex);
-                if ((expressionEnd != -1) && (expressionEnd > endIndex + 2)) {
-                    String key = expression.substring(endIndex + 2, expressionEnd);
-                    String value = getString(key);
-                    result.append(expression.substring(startIndex, endIndex));
-                    if (value != null) {
-                        result.append(value);
-                    } else {
-                        String msg = String.format("no value for \"%s\" in \"%s\"", key, expression);
-                        throw new LookupException(msg, key, String.class);
-                    }
-                    startIndex = expressionEnd + 1;  // skip trailing "}"
+        Object cached = resolvedValues.get(key);
+        if (cached != null) {
+            return cached == NULL_VALUE ? null : (String) cached;
+        }
+        if (!resolving.add(key)) {
+            String msg = String.format("circular reference %s -> %s", StringUtils.join(resolving, " -> "), key);
+            throw new LookupException(msg, key, String.class);
+        }
+        ResourceTemplate template = getTemplate(key);
+        String result = template.getLiteral();
+        if (result == null && template != ResourceTemplate.NULL) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < template.size(); i++) {
+                String segment = template.getSegment(i);
+                if (template.isReference(i)) {
+                    addDependent(segment, key);
+                    String reference = resolve(segment, resolving);
+                    builder.append(reference != null ? reference : "");
                 } else {
-                    String msg = String.format("no closing brace in \"%s\"", expression);
-                    throw new LookupException(msg, "<not found>", String.class);
+                    builder.append(segment);
+                }
+            }
+            result = builder.toString();
+        }
+        resolving.remove(key);
+        Object existing = resolvedValues.putIfAbsent(key, result == null ? NULL_VALUE : result);
+        if (existing != null) {
+            return existing == NULL_VALUE ? null : (String) existing;
+        }
+        return result;
+    }
+
+    private ResourceTemplate getTemplate(String key) {
+        if (parent != null && !ownsKey(key)) {
+            return parent.getTemplate(key);
+        }
+        ResourceTemplate template = templates.get(key);
+        if (template == null) {
+            String value = bundle.containsKey(key) ? bundle.getString(key) : null;
+            template = StringUtils.isBlank(value) ? ResourceTemplate.NULL : ResourceTemplate.compile(value.trim());
+            ResourceTemplate existing = templates.putIfAbsent(key, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+
+    private void addDependent(String key, String dependent) {
+        Set<String> referrers = dependents.get(key);
+        if (referrers == null) {
+            referrers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            Set<String> existing = dependents.putIfAbsent(key, referrers);
+            if (existing != null) {
+                referrers = existing;
+            }
+        }
+        referrers.add(dependent);
+    }
+
+    /**
+     * The keys of this map followed by the inherited keys it doesn't override, without copying the parent's keys.
+     */
+    private class ChainedKeySet extends AbstractSet<String> {
+        private final Set<String> ownKeys;
+
+        private ChainedKeySet(Set<String> ownKeys) {
+            this.ownKeys = ownKeys;
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return key instanceof String && containsKey((String) key);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            final Iterator<String> own = ownKeys.iterator();
+            final Iterator<String> inherited = parent.keySet().iterator();
+            return new Iterator<String>() {
+                private String next;
+
+                public boolean hasNext() {
+                    while (next == null) {
+                        if (own.hasNext()) {
+                            next = own.next();
+                        } else if (inherited.hasNext()) {
+                            String key = inherited.next();
+                            if (!ownKeys.contains(key)) {
+                                next = key;
+                            }
+                        } else {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    String key = next;
+                    next = null;
+                    return key;
                 }
-            } else {  // we've found an escaped variable - "\${"
-                result.append(expression.substring(startIndex, endIndex - 1));
-                result.append("${");
-                startIndex = endIndex + 2; // skip past "${"
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            int size = ownKeys.size();
+            for (String key : parent.keySet()) {
+                if (!ownKeys.contains(key)) {
+                    size++;
+                }
+            }
+            return size;
+        }
+    }
+
+    private static class CacheKey {
+        private final Object first;
+        private final Object second;
+
+        private CacheKey(Object first, Object second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof CacheKey)) {
+                return false;
             }
+            CacheKey key = (CacheKey) other;
+            return first.equals(key.first) && second.equals(key.second);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * first.hashCode() + second.hashCode();
         }
-        result.append(expression.substring(startIndex));
-        return result.toString();
     }
 }
@@ -1,6 +1,20 @@
 package no.java.swing.resource;
 
+import javax.swing.Icon;
+import javax.swing.KeyStroke;
+import java.awt.Color;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by IntelliJ IDEA.
@@ -10,8 +24,17 @@ import java.util.*;
  * To change this template use File | Settings | File Templates.
  */
 public final class ResourceMapLoader {
-    protected static final Locale NO_LOCALE = new Locale("", "");
-    private static Map<String, Map<Locale, ResourceMap>> resources = Collections.synchronizedMap(new HashMap<String, Map<Locale, ResourceMap>>());
+    private static final ConcurrentMap<LoaderKey, Future<ResourceMapImpl>> resources = new ConcurrentHashMap<LoaderKey, Future<ResourceMapImpl>>();
+    private static final ConcurrentMap<LoaderKey, Future<ResourceMapImpl>> levels = new ConcurrentHashMap<LoaderKey, Future<ResourceMapImpl>>();
+    private static final Map<String, Class<?>> PRELOAD_TYPES = new LinkedHashMap<String, Class<?>>();
+
+    static {
+        PRELOAD_TYPES.put(".icon", Icon.class);
+        PRELOAD_TYPES.put(".accelerator", KeyStroke.class);
+        PRELOAD_TYPES.put(".color", Color.class);
+        PRELOAD_TYPES.put(".foreground", Color.class);
+        PRELOAD_TYPES.put(".background", Color.class);
+    }
 
     public static ResourceMap getDefault() {
         return getResourceMap(ResourceBundleLoader.getBundleName(), Locale.getDefault());
@@ -21,41 +44,229 @@ public final class ResourceMapLoader {
         return getResourceMap(clazz.getName(), locale);
     }
 
-    public static ResourceMap getResourceMap(String name, Locale locale) {
-        if (locale == null) {
-            locale = NO_LOCALE;
+    /**
+     * Returns the resource map for the given bundle name and locale. The bundle is loaded once, concurrent callers
+     * asking for the same bundle wait for that single load, and later calls never block.
+     * <p/>
+     * Each locale in the fallback chain, e.g. <code>no_NO</code>, <code>no</code> and the root locale, gets its own map
+     * holding only the keys of its own bundle and chained to the map of the parent locale. Maps for different locales
+     * thus share the inherited entries instead of each holding a full copy.
+     *
+     * @param name   the bundle base name.
+     * @param locale the locale, or {@code null} for the default locale.
+     * @return the resource map.
+     * @throws MissingResourceException if no bundle is found for the name.
+     */
+    public static ResourceMap getResourceMap(final String name, Locale locale) {
+        final Locale bundleLocale = locale == null ? Locale.getDefault() : locale;
+        return getOrLoad(resources, new LoaderKey(name, Collections.singletonList(bundleLocale)), new Callable<ResourceMapImpl>() {
+            public ResourceMapImpl call() throws Exception {
+                return loadResourceMap(name, bundleLocale);
+            }
+        });
+    }
+
+    private static ResourceMapImpl getOrLoad(ConcurrentMap<LoaderKey, Future<ResourceMapImpl>> cache, LoaderKey key, Callable<ResourceMapImpl> loader) {
+        Future<ResourceMapImpl> future = cache.get(key);
+        if (future == null) {
+            FutureTask<ResourceMapImpl> task = new FutureTask<ResourceMapImpl>(loader);
+            future = cache.putIfAbsent(key, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
         }
-        Map<Locale, ResourceMap> values = resources.get(name);
-        if (values != null) {
-            ResourceMap resourceMap = values.get(locale);
-            if (resourceMap != null) {
-                return resourceMap;
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading resource bundle " + key.name, e);
+        } catch (ExecutionException e) {
+            // Don't cache failures, a later call may succeed
+            cache.remove(key, future);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
-        } else {
-            values = new HashMap<Locale, ResourceMap>();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Warms up resource maps in parallel on background threads shared by all preloads, so that later lookups on the
+     * EDT hit the caches.
+     * Each bundle is loaded and all its values are resolved. Keys ending in <code>.icon</code>, <code>.accelerator</code>,
+     * <code>.color</code>, <code>.foreground</code> and <code>.background</code> are also converted to icons, key
+     * strokes and colors.
+     *
+     * @param names  the bundle base names.
+     * @param locale the locale, or {@code null} for the default bundles.
+     * @return the time in milliseconds spent warming up each bundle, keyed by bundle name in iteration order.
+     */
+    public static Map<String, Future<Long>> preload(Collection<String> names, final Locale locale) {
+        Map<String, Future<Long>> timings = new LinkedHashMap<String, Future<Long>>();
+        if (names.isEmpty()) {
+            return timings;
+        }
+        for (final String name : names) {
+            timings.put(name, PreloadExecutor.INSTANCE.submit(new Callable<Long>() {
+                public Long call() throws Exception {
+                    long start = System.nanoTime();
+                    warmUp(getResourceMap(name, locale));
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }
+            }));
         }
-        return loadFromBundle(name, locale, values);
+        return timings;
     }
 
-    private static ResourceMap loadFromBundle(String name, Locale locale, Map<Locale, ResourceMap> values) {
-        ResourceMap map = null;
-        if (locale == NO_LOCALE) {
-            ResourceBundle bundle = ResourceBundle.getBundle(name);
-            if (bundle != null) {
-                map = new ResourceMapImpl(bundle);
+    private static void warmUp(ResourceMap map) {
+        for (String key : map.keySet()) {
+            try {
+                map.getObject(key, String.class);
+                for (Map.Entry<String, Class<?>> entry : PRELOAD_TYPES.entrySet()) {
+                    if (key.endsWith(entry.getKey())) {
+                        map.getObject(key, entry.getValue());
+                    }
+                }
+            } catch (RuntimeException ignore) {
+                // the error is reported again when the value is actually looked up
             }
-        } else {
-            ResourceBundle bundle = ResourceBundle.getBundle(name, locale);
-            if (bundle != null) {
-                map = new ResourceMapImpl(bundle);
-            } else {
-                return getResourceMap(name, NO_LOCALE);
+        }
+    }
+
+    private static ResourceMapImpl loadResourceMap(String name, Locale locale) {
+        ResourceMapImpl map = getLevel(name, locale);
+        // Like ResourceBundle.getBundle, prefer the default locale over the root bundle
+        if ((map == null || Locale.ROOT.equals(map.getLocale()))
+                && !locale.equals(Locale.ROOT) && !locale.equals(Locale.getDefault())) {
+            ResourceMapImpl fallback = getLevel(name, Locale.getDefault());
+            if (fallback != null) {
+                map = fallback;
             }
         }
-        if (map != null) {
-            values.put(locale, map);
-            resources.put(name, values);
+        if (map == null) {
+            throw new MissingResourceException(
+                    "Can't find bundle for base name " + name + ", locale " + locale, name + "_" + locale, ""
+            );
         }
         return map;
     }
+
+    private static ResourceMapImpl getLevel(String name, Locale locale) {
+        return getLevel(name, BinaryResourceControl.INSTANCE.getCandidateLocales(name, locale), 0);
+    }
+
+    /**
+     * Returns the map of the most specific bundle in the fallback chain, chained to the maps of the less specific
+     * locales, or {@code null} if there are no bundles at all. The chain is walked along the candidate list of the
+     * requested locale, since candidate lists of the locales in it may refer back to each other (<code>nb</code> and
+     * <code>no</code>). A map is therefore cached by the rest of the candidate list it was loaded for, not by its locale
+     * alone, so chains that only share a locale don't share its map, and a load only waits for shorter chains.
+     */
+    private static ResourceMapImpl getLevel(final String name, final List<Locale> candidates, final int index) {
+        final Locale locale = candidates.get(index);
+        LoaderKey key = new LoaderKey(name, new ArrayList<Locale>(candidates.subList(index, candidates.size())));
+        return getOrLoad(levels, key, new Callable<ResourceMapImpl>() {
+            public ResourceMapImpl call() throws Exception {
+                ResourceMapImpl parent = index + 1 < candidates.size() ? getLevel(name, candidates, index + 1) : null;
+                ResourceBundle bundle = loadOwnBundle(name, locale);
+                return bundle == null ? parent : new ResourceMapImpl(bundle, parent, name, locale);
+            }
+        });
+    }
+
+    /**
+     * Loads the bundle of exactly the given locale, without parents.
+     *
+     * @return the bundle, or {@code null} if the locale has no bundle of its own.
+     */
+    private static ResourceBundle loadOwnBundle(String name, Locale locale) {
+        BinaryResourceControl control = BinaryResourceControl.INSTANCE;
+        ClassLoader loader = ResourceMapLoader.class.getClassLoader();
+        for (String format : control.getFormats(name)) {
+            try {
+                ResourceBundle bundle = control.newBundle(name, locale, format, loader, false);
+                if (bundle != null) {
+                    return bundle;
+                }
+            } catch (Exception ignore) {
+                // try the next format, as ResourceBundle.getBundle does
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the distinct maps of all locales loaded so far, each after the map of its parent locale.
+     */
+    static List<ResourceMapImpl> getLoadedLevels() {
+        Set<ResourceMapImpl> loaded = new LinkedHashSet<ResourceMapImpl>();
+        for (Future<ResourceMapImpl> future : levels.values()) {
+            if (future.isDone()) {
+                try {
+                    addWithParents(future.get(), loaded);
+                } catch (Exception ignore) {
+                    // failed loads are removed by the thread that started them
+                }
+            }
+        }
+        return new ArrayList<ResourceMapImpl>(loaded);
+    }
+
+    private static void addWithParents(ResourceMapImpl map, Set<ResourceMapImpl> loaded) {
+        if (map != null && !loaded.contains(map)) {
+            addWithParents(map.getParent(), loaded);
+            loaded.add(map);
+        }
+    }
+
+    /**
+     * The executor shared by all preloads, created on first use. Its threads end when they have been idle for a while.
+     */
+    private static class PreloadExecutor {
+        private static final ExecutorService INSTANCE = createExecutor();
+
+        private static ExecutorService createExecutor() {
+            int threads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "ResourceMapLoader-preload");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }
+            );
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    static class LoaderKey {
+        final String name;
+        final List<Locale> locales;
+
+        private LoaderKey(String name, List<Locale> locales) {
+            this.name = name;
+            this.locales = locales;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof LoaderKey)) {
+                return false;
+            }
+            LoaderKey key = (LoaderKey) other;
+            return name.equals(key.name) && locales.equals(key.locales);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + locales.hashCode();
+        }
+    }
 }
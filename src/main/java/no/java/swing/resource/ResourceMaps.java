@@ -0,0 +1,44 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Static helpers for {@link ResourceMap}s.
+ */
+public final class ResourceMaps {
+
+    private ResourceMaps() {
+    }
+
+    /**
+     * Formats the value of the key like {@link ResourceMap#getString(String, Object...)}, but appends the result to
+     * the builder. Resource maps from {@link ResourceMapLoader} format straight into the builder without creating an
+     * intermediate string. Nothing is appended if the key is missing.
+     *
+     * @return the builder.
+     */
+    public static StringBuilder appendString(ResourceMap map, StringBuilder builder, String key, Object... args) {
+        Validate.notNull(map, "Resource map may not be null");
+        Validate.notNull(builder, "Builder may not be null");
+        if (map instanceof ResourceMapImpl) {
+            return ((ResourceMapImpl) map).appendString(builder, key, args);
+        }
+        return builder.append(map.getString(key, args));
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import java.util.EventListener;
+import java.util.Set;
+
+/**
+ * Notified on the event dispatch thread when {@link ResourceBundleReloader} has reloaded a resource map.
+ * Listeners typically reconfigure the actions and components using the changed keys, for instance with
+ * {@link no.java.swing.ConfigurationUtil#configureAction(javax.swing.Action, String, ResourceMap)}.
+ */
+public interface ResourceReloadListener extends EventListener {
+    /**
+     * @param resourceMap the reloaded resource map.
+     * @param changedKeys the keys that were added, removed or changed, including keys referring to them.
+     */
+    void resourcesReloaded(ResourceMap resourceMap, Set<String> changedKeys);
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Optional statistics of resource lookups: lookups per bundle, lookups of missing keys and time spent in converters.
+ * Use them to find hot bundles, keys that are looked up but never defined, and expensive conversions.
+ * <p/>
+ * Statistics are off by default, and cost a single volatile read per lookup while off. Turn them on with
+ * {@link #setEnabled(boolean)}, or by starting the application with
+ * <code>-Dno.java.swing.resource.statistics=true</code>, which also registers them with the platform MBean server as
+ * {@value #OBJECT_NAME}.
+ */
+public final class ResourceStatistics implements ResourceStatisticsMXBean {
+    public static final String OBJECT_NAME = "no.java.swing.resource:type=ResourceStatistics";
+    private static final String UNNAMED_BUNDLE = "<unnamed>";
+    private static final ResourceStatistics INSTANCE = new ResourceStatistics();
+
+    private static volatile boolean enabled;
+    private final ConcurrentMap<String, StripedCounter> lookups = new ConcurrentHashMap<String, StripedCounter>();
+    private final ConcurrentMap<String, StripedCounter> misses = new ConcurrentHashMap<String, StripedCounter>();
+    private final ConcurrentMap<String, StripedCounter> conversionNanos = new ConcurrentHashMap<String, StripedCounter>();
+
+    static {
+        if (Boolean.getBoolean("no.java.swing.resource.statistics")) {
+            enabled = true;
+            registerMBean();
+        }
+    }
+
+    private ResourceStatistics() {
+    }
+
+    public static ResourceStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the statistics with the platform MBean server, unless already registered.
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    static boolean isRecording() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        ResourceStatistics.enabled = enabled;
+    }
+
+    static void recordLookup(String bundle) {
+        counter(INSTANCE.lookups, bundleName(bundle)).increment();
+    }
+
+    static void recordMiss(String bundle, String key) {
+        counter(INSTANCE.misses, bundleName(bundle) + ":" + key).increment();
+    }
+
+    static void recordConversion(ResourceConverter<?> converter, long nanos) {
+        counter(INSTANCE.conversionNanos, converter.getClass().getName()).add(nanos);
+    }
+
+    private static String bundleName(String bundle) {
+        return bundle == null ? UNNAMED_BUNDLE : bundle;
+    }
+
+    private static StripedCounter counter(ConcurrentMap<String, StripedCounter> counters, String name) {
+        StripedCounter counter = counters.get(name);
+        if (counter == null) {
+            counter = new StripedCounter();
+            StripedCounter existing = counters.putIfAbsent(name, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter;
+    }
+
+    @Override
+    public Map<String, Long> getLookupCounts() {
+        return snapshot(lookups, 1);
+    }
+
+    @Override
+    public Map<String, Long> getMissCounts() {
+        return snapshot(misses, 1);
+    }
+
+    @Override
+    public Map<String, Long> getConversionTimes() {
+        return snapshot(conversionNanos, 1000);
+    }
+
+    /**
+     * Returns the counters divided by the divisor, sorted by descending value.
+     */
+    private static Map<String, Long> snapshot(Map<String, StripedCounter> counters, long divisor) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>();
+        for (Map.Entry<String, StripedCounter> entry : counters.entrySet()) {
+            Long value = entry.getValue().sum() / divisor;
+            entries.add(new AbstractMap.SimpleImmutableEntry<String, Long>(entry.getKey(), value));
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            public int compare(Map.Entry<String, Long> first, Map.Entry<String, Long> second) {
+                int result = second.getValue().compareTo(first.getValue());
+                return result != 0 ? result : first.getKey().compareTo(second.getKey());
+            }
+        });
+        Map<String, Long> snapshot = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, Long> entry : entries) {
+            snapshot.put(entry.getKey(), entry.getValue());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the statistics as text, one counter per line, highest counts first.
+     */
+    @Override
+    public String dump() {
+        StringBuilder builder = new StringBuilder();
+        dump(builder, "Lookups per bundle", getLookupCounts());
+        dump(builder, "Missing keys", getMissCounts());
+        dump(builder, "Conversion time per converter (microseconds)", getConversionTimes());
+        return builder.toString();
+    }
+
+    private static void dump(StringBuilder builder, String title, Map<String, Long> counts) {
+        builder.append(title).append(':').append(System.getProperty("line.separator"));
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            builder.append(String.format("%12d  %s%n", entry.getValue(), entry.getKey()));
+        }
+    }
+
+    @Override
+    public void reset() {
+        lookups.clear();
+        misses.clear();
+        conversionNanos.clear();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link ResourceStatistics}.
+ */
+public interface ResourceStatisticsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the number of lookups per bundle, named by base name and locale like <code>texts_no</code>.
+     */
+    Map<String, Long> getLookupCounts();
+
+    /**
+     * @return the number of lookups of missing keys, per <code>bundle:key</code> with the bundle named as above.
+     */
+    Map<String, Long> getMissCounts();
+
+    /**
+     * @return the total conversion time in microseconds, per converter class.
+     */
+    Map<String, Long> getConversionTimes();
+
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A resource value compiled into literal and <code>${key}</code> reference segments.
+ * <p/>
+ * Given the following resources:
+ * <pre>
+ * hello = Hello
+ * world = World
+ * place = ${world}
+ * </pre>
+ * the template for <code>"${hello} ${place}"</code> consists of the reference <code>hello</code>, the literal
+ * <code>" "</code> and the reference <code>place</code>. An escaped <code>\${</code> is kept as a literal
+ * <code>${</code>, and the value <code>${null}</code> compiles to the {@link #NULL} template.
+ */
+final class ResourceTemplate {
+    static final ResourceTemplate NULL = new ResourceTemplate(new String[0], new boolean[0]);
+
+    private final String[] segments;
+    private final boolean[] references;
+
+    private ResourceTemplate(String[] segments, boolean[] references) {
+        this.segments = segments;
+        this.references = references;
+    }
+
+    static ResourceTemplate compile(String expression) {
+        if (expression.trim().equals("${null}")) {
+            return NULL;
+        }
+        List<String> segments = new ArrayList<String>();
+        List<Boolean> references = new ArrayList<Boolean>();
+        StringBuilder literal = new StringBuilder();
+        int startIndex = 0;
+        int endIndex;
+        while ((endIndex = expression.indexOf("${", startIndex)) != -1) {
+            if (endIndex == 0 || expression.charAt(endIndex - 1) != '\\') {
+                int expressionEnd = expression.indexOf("}", endIndex);
+                if ((expressionEnd != -1) && (expressionEnd > endIndex + 2)) {
+                    literal.append(expression, startIndex, endIndex);
+                    if (literal.length() > 0) {
+                        segments.add(literal.toString());
+                        references.add(Boolean.FALSE);
+                        literal.setLength(0);
+                    }
+                    segments.add(expression.substring(endIndex + 2, expressionEnd));
+                    references.add(Boolean.TRUE);
+                    startIndex = expressionEnd + 1;  // skip trailing "}"
+                } else {
+                    String msg = String.format("no closing brace in \"%s\"", expression);
+                    throw new LookupException(msg, "<not found>", String.class);
+                }
+            } else {  // we've found an escaped variable - "\${"
+                literal.append(expression, startIndex, endIndex - 1);
+                literal.append("${");
+                startIndex = endIndex + 2; // skip past "${"
+            }
+        }
+        literal.append(expression, startIndex, expression.length());
+        if (literal.length() > 0 || segments.isEmpty()) {
+            segments.add(literal.toString());
+            references.add(Boolean.FALSE);
+        }
+        boolean[] referenceFlags = new boolean[references.size()];
+        for (int i = 0; i < referenceFlags.length; i++) {
+            referenceFlags[i] = references.get(i);
+        }
+        return new ResourceTemplate(segments.toArray(new String[segments.size()]), referenceFlags);
+    }
+
+    int size() {
+        return segments.length;
+    }
+
+    String getSegment(int index) {
+        return segments[index];
+    }
+
+    boolean isReference(int index) {
+        return references[index];
+    }
+
+    /**
+     * Returns the literal value if this template has no references, otherwise {@code null}.
+     */
+    String getLiteral() {
+        return segments.length == 1 && !references[0] ? segments[0] : null;
+    }
+}
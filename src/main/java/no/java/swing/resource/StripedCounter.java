@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter spread over several cells, so that threads updating it concurrently rarely contend on the same cell.
+ * The cells are spaced a cache line apart, and away from the ends of the array, so that updates of different cells
+ * don't invalidate each other's cache lines. Reading the value sums the cells, and is therefore not an atomic snapshot.
+ */
+final class StripedCounter {
+    // Longs per 64 byte cache line
+    private static final int PADDING = 8;
+    private static final int STRIPES;
+
+    static {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 16) {
+            stripes <<= 1;
+        }
+        STRIPES = stripes;
+    }
+
+    private final AtomicLongArray cells = new AtomicLongArray((STRIPES + 1) * PADDING);
+
+    void add(long delta) {
+        long id = Thread.currentThread().getId();
+        cells.addAndGet(cellIndex((int) (id ^ (id >>> 16)) & (STRIPES - 1)), delta);
+    }
+
+    void increment() {
+        add(1);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(cellIndex(i));
+        }
+        return sum;
+    }
+
+    private static int cellIndex(int stripe) {
+        return (stripe + 1) * PADDING;
+    }
+}
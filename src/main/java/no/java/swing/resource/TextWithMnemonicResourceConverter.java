@@ -12,6 +12,6 @@ import no.java.swing.TextWithMnemonic;
 public class TextWithMnemonicResourceConverter implements ResourceConverter<TextWithMnemonic> {
     @Override
     public TextWithMnemonic convert(String value) {
-        return new TextWithMnemonic(value);
+        return TextWithMnemonic.valueOf(value);
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing;
+
+import no.java.swing.resource.ResourceMap;
+import no.java.swing.resource.ResourceMapLoader;
+import org.junit.Test;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigurationUtilTest {
+    private final ResourceMap resourceMap = ResourceMapLoader.getResourceMap("no.java.swing.actions", Locale.ROOT);
+
+    @Test
+    public void actionsAreConfiguredFromTheIndex() throws Exception {
+        Map<String, Action> actions = new LinkedHashMap<String, Action>();
+        actions.put("copy", new TestAction());
+        actions.put("paste", new TestAction());
+        actions.put("unknown", new TestAction());
+
+        ConfigurationUtil.configureActions(actions, resourceMap);
+
+        Action copy = actions.get("copy");
+        assertEquals("Copy", copy.getValue(Action.NAME));
+        assertEquals(KeyEvent.VK_C, copy.getValue(Action.MNEMONIC_KEY));
+        assertEquals(KeyStroke.getKeyStroke("control C"), copy.getValue(Action.ACCELERATOR_KEY));
+        assertEquals("Copies the selection", copy.getValue(Action.SHORT_DESCRIPTION));
+        assertEquals("Paste", actions.get("paste").getValue(Action.NAME));
+        assertNull(actions.get("paste").getValue(Action.SMALL_ICON));
+        assertNull(actions.get("unknown").getValue(Action.NAME));
+    }
+
+    @Test
+    public void iconsAreReadWhenFirstShown() throws Exception {
+        final Action copy = new TestAction();
+        ConfigurationUtil.configureActions(Collections.singletonMap("copy", copy), resourceMap);
+        final Icon placeholder = (Icon) copy.getValue(Action.SMALL_ICON);
+        assertFalse(placeholder instanceof ImageIcon);
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                assertEquals(16, placeholder.getIconWidth());
+            }
+        });
+        // the placeholder replaces itself in a later event
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                assertTrue(copy.getValue(Action.SMALL_ICON) instanceof ImageIcon);
+                assertSame(resourceMap.getIcon("copy.icon"), copy.getValue(Action.SMALL_ICON));
+            }
+        });
+    }
+
+    private static class TestAction extends AbstractAction {
+        public void actionPerformed(ActionEvent event) {
+        }
+    }
+}
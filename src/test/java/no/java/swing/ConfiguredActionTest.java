@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing;
+
+import no.java.swing.resource.ResourceMap;
+import no.java.swing.resource.ResourceMapLoader;
+import org.junit.Test;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConfiguredActionTest {
+    private final ResourceMap resourceMap = ResourceMapLoader.getResourceMap("no.java.swing.actions", Locale.ROOT);
+
+    @Test
+    public void eagerActionsAreConfiguredWhenCreated() throws Exception {
+        Action action = new TestAction(resourceMap, false);
+        assertEquals("Copy", action.getValue(Action.NAME));
+        assertTrue(action.getValue(Action.SMALL_ICON) instanceof ImageIcon);
+    }
+
+    @Test
+    public void lazyActionsResolveValuesOnFirstAccessAndNotifyListeners() throws Exception {
+        Action action = new TestAction(resourceMap, true);
+        final List<String> changes = new ArrayList<String>();
+        action.addPropertyChangeListener(new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent event) {
+                changes.add(event.getPropertyName());
+            }
+        });
+
+        assertEquals("Copy", action.getValue(Action.NAME));
+        assertTrue(changes.contains(Action.NAME));
+        assertTrue(changes.contains(Action.MNEMONIC_KEY));
+        assertFalse(changes.contains(Action.SMALL_ICON));
+
+        assertEquals(KeyStroke.getKeyStroke("control C"), action.getValue(Action.ACCELERATOR_KEY));
+        assertTrue(changes.contains(Action.ACCELERATOR_KEY));
+    }
+
+    @Test
+    public void valuesSetBeforeFirstAccessAreKept() throws Exception {
+        Action action = new TestAction(resourceMap, true);
+        action.putValue(Action.SMALL_ICON, null);
+        action.putValue(Action.NAME, "Duplicate");
+        assertNull(action.getValue(Action.SMALL_ICON));
+        assertEquals("Duplicate", action.getValue(Action.NAME));
+    }
+
+    private static class TestAction extends ConfiguredAction {
+        private TestAction(ResourceMap resourceMap, boolean lazy) {
+            super("copy", resourceMap, lazy);
+        }
+
+        public void actionPerformed(ActionEvent event) {
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class DelegatingActionTest {
+    private final DelegatingAction.FocusedOwnerListener focusListener = new DelegatingAction.FocusedOwnerListener();
+
+    @Test
+    public void delegateIsTheActionOfTheClosestComponent() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                JPanel panel = new JPanel();
+                JTextField field = new JTextField();
+                JTextField other = new JTextField();
+                panel.add(field);
+                panel.add(other);
+                RecordingAction panelAction = register(panel, "closest");
+                RecordingAction fieldAction = register(field, "closest");
+                DelegatingAction action = new DelegatingAction("closest", null);
+
+                focus(field);
+                focusListener.run();
+                assertSame(fieldAction, action.getDelegate());
+                assertTrue(action.isEnabled());
+
+                focus(other);
+                focusListener.run();
+                assertSame(panelAction, action.getDelegate());
+            }
+        });
+    }
+
+    @Test
+    public void focusChangesAreCoalescedAndNotRunFromGetters() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                JPanel panel = new JPanel();
+                JTextField first = new JTextField();
+                JTextField second = new JTextField();
+                JTextField elsewhere = new JTextField();
+                panel.add(first);
+                panel.add(second);
+                register(panel, "coalesced");
+                DelegatingAction action = new DelegatingAction("coalesced", null);
+                final List<String> changes = new ArrayList<String>();
+                action.addPropertyChangeListener(new PropertyChangeListener() {
+                    public void propertyChange(PropertyChangeEvent event) {
+                        changes.add(event.getPropertyName());
+                    }
+                });
+
+                focus(first);
+                focus(elsewhere);
+                focus(second);
+                assertFalse(action.isEnabled());
+                assertTrue(changes.isEmpty());
+
+                focusListener.run();
+                assertTrue(action.isEnabled());
+                assertEquals(1, changes.size());
+            }
+        });
+    }
+
+    @Test
+    public void keyEventsAndPerformedActionsRunThePendingUpdate() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                JTextField field = new JTextField();
+                JTextField other = new JTextField();
+                RecordingAction fieldAction = register(field, "pending");
+                RecordingAction otherAction = register(other, "pending");
+                DelegatingAction action = new DelegatingAction("pending", null);
+
+                focus(field);
+                focusListener.dispatchKeyEvent(new KeyEvent(field, KeyEvent.KEY_PRESSED, 0, 0, KeyEvent.VK_C, 'c'));
+                assertSame(fieldAction, action.getDelegate());
+
+                focus(other);
+                action.actionPerformed(new ActionEvent(action, ActionEvent.ACTION_PERFORMED, "pending"));
+                assertSame(otherAction, action.getDelegate());
+                assertEquals(0, fieldAction.sources.size());
+                assertEquals(1, otherAction.sources.size());
+                assertSame(other, otherAction.sources.get(0));
+            }
+        });
+    }
+
+    @Test
+    public void collectedActionsAreRemovedFromTheIndex() throws Exception {
+        new DelegatingAction("collected", null);
+        for (int i = 0; i < 100 && DelegatingAction.hasGlobalActions("collected"); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertFalse(DelegatingAction.hasGlobalActions("collected"));
+    }
+
+    @Test
+    public void disposingWindowReleasesItsActions() throws Exception {
+        assumeTrue(!GraphicsEnvironment.isHeadless());
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                JFrame disposed = createFrame();
+                JFrame kept = createFrame();
+                try {
+                    DelegatingAction disposedAction = new DelegatingAction("copy", disposed.getContentPane());
+                    DelegatingAction keptAction = new DelegatingAction("copy", kept.getContentPane());
+                    assertTrue(DelegatingAction.hasWindowActions(disposed));
+                    assertTrue(DelegatingAction.hasWindowActions(kept));
+
+                    disposed.dispose();
+
+                    assertFalse(DelegatingAction.hasWindowActions(disposed));
+                    assertNull(disposedAction.getDelegate());
+                    assertTrue(DelegatingAction.hasWindowActions(kept));
+                    // the actions are weakly referenced, so keep this one reachable
+                    assertFalse(keptAction.isEnabled());
+                } finally {
+                    disposed.dispose();
+                    kept.dispose();
+                }
+            }
+        });
+    }
+
+    private void focus(Component component) {
+        focusListener.propertyChange(new PropertyChangeEvent(this, "permanentFocusOwner", null, component));
+    }
+
+    private static RecordingAction register(JComponent component, String actionKey) {
+        RecordingAction action = new RecordingAction();
+        component.getActionMap().put(actionKey, action);
+        return action;
+    }
+
+    private static JFrame createFrame() {
+        JFrame frame = new JFrame();
+        frame.getContentPane().add(new JTextField());
+        // makes the frame displayable without showing it
+        frame.pack();
+        return frame;
+    }
+
+    private static class RecordingAction extends AbstractAction {
+        private final List<Object> sources = new ArrayList<Object>();
+
+        public void actionPerformed(ActionEvent event) {
+            sources.add(event.getSource());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeCellRenderer;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HighlightingCellRendererTest {
+    private static final Color HIGHLIGHT = new Color(0xffff99);
+
+    private final HighlightingCellRenderer renderer = new HighlightingCellRenderer(HIGHLIGHT);
+
+    @Test
+    public void listMatchesAreHighlightedWithoutATextComponent() {
+        JList<String> list = new JList<String>();
+        list.putClientProperty(HighlightingCellRenderer.HIGHLIGHT_PATTERN_PROPERTY, Pattern.compile("mmm"));
+
+        BufferedImage image = paint(renderer.getListCellRendererComponent(list, "xxxmmmxxx", 0, false, false));
+        assertTrue(contains(image, HIGHLIGHT, 0, image.getWidth()));
+        assertEquals(0, renderer.getComponentCount());
+
+        image = paint(renderer.getListCellRendererComponent(list, "xxxmmmxxx", 0, true, false));
+        assertFalse(contains(image, HIGHLIGHT, 0, image.getWidth()));
+    }
+
+    @Test
+    public void spansFromTheProviderAreHighlighted() {
+        JList<String> list = new JList<String>();
+        list.putClientProperty(HighlightingCellRenderer.HIGHLIGHT_SPANS_PROPERTY, new HighlightSpanProvider() {
+            public int[] getHighlightSpans(int row, int column) {
+                return new int[]{0, 3};
+            }
+        });
+
+        BufferedImage image = paint(renderer.getListCellRendererComponent(list, "mmmxxxxxxxxx", 0, false, false));
+        int middle = image.getWidth() / 2;
+        assertTrue(contains(image, HIGHLIGHT, 0, middle));
+        assertFalse(contains(image, HIGHLIGHT, middle, image.getWidth()));
+    }
+
+    @Test
+    public void treeCellsKeepTheirIconAndFocusIndication() {
+        DefaultMutableTreeNode root = new DefaultMutableTreeNode("root");
+        JTree tree = new JTree(root);
+        DefaultTreeCellRenderer defaultRenderer = new DefaultTreeCellRenderer();
+        Icon leafIcon = defaultRenderer.getLeafIcon();
+        Color focusColor = defaultRenderer.getBorderSelectionColor();
+
+        Component component = renderer.getTreeCellRendererComponent(tree, root, false, false, true, 0, false);
+        int textOnlyWidth = new HighlightingCellRenderer(HIGHLIGHT).getListCellRendererComponent(
+                new JList<String>(), "root", 0, false, false
+        ).getPreferredSize().width;
+        assertTrue(component.getPreferredSize().width >= textOnlyWidth + leafIcon.getIconWidth());
+
+        BufferedImage image = paint(renderer.getTreeCellRendererComponent(tree, root, true, false, true, 0, true));
+        int lastRow = image.getHeight() - 1;
+        assertTrue(contains(image, focusColor, image.getWidth() - 1, image.getWidth()));
+        assertEquals(focusColor.getRGB(), image.getRGB(image.getWidth() / 2 + leafIcon.getIconWidth() / 2, lastRow));
+    }
+
+    @Test
+    public void truncatedWidthIsTheLongestPrefixThatFitsBeforeTheDots() {
+        Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+        FontMetrics metrics = renderer.getFontMetrics(font);
+        String text = "The quick brown fox jumps over the lazy dog";
+        int textWidth = metrics.stringWidth(text);
+        assertEquals(-1, renderer.getTruncatedTextWidth(text, font, textWidth));
+
+        int dotsWidth = metrics.stringWidth("...");
+        for (int available = 0; available < textWidth; available += 7) {
+            int expected = 0;
+            for (int end = 1; end <= text.length() && metrics.stringWidth(text.substring(0, end)) <= available - dotsWidth; end++) {
+                expected = metrics.stringWidth(text.substring(0, end));
+            }
+            assertEquals(expected, renderer.getTruncatedTextWidth(text, font, available));
+            assertEquals(expected, renderer.getTruncatedTextWidth(text, font, available));
+        }
+    }
+
+    private static BufferedImage paint(Component component) {
+        Dimension size = component.getPreferredSize();
+        component.setSize(size);
+        BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.createGraphics();
+        try {
+            component.paint(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private static boolean contains(BufferedImage image, Color color, int fromX, int toX) {
+        for (int x = fromX; x < toX; x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                if (image.getRGB(x, y) == color.getRGB()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
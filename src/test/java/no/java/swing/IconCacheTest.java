@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IconCacheTest {
+    private final List<File> files = new ArrayList<File>();
+
+    @After
+    public void deleteFiles() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void imageIconsAreDecodedAndShared() throws Exception {
+        URL url = createImage(24, 20);
+        ImageIcon icon = IconCache.getImageIcon(url);
+        assertEquals(24, icon.getIconWidth());
+        assertEquals(20, icon.getImage().getHeight(null));
+        assertSame(icon, IconCache.getImageIcon(url));
+        assertSame(icon, IconCache.getIcon(url));
+
+        ImageIcon scaled = IconCache.getImageIcon(url, 12, 10);
+        assertEquals(12, scaled.getImage().getWidth(null));
+    }
+
+    @Test(timeout = 10000)
+    public void registeredDisabledButtonShowsTheLoadedImage() throws Exception {
+        URL url = createImage(24, 20);
+        // the button is not shown, so it may be set up off the EDT, before the image is likely to be decoded
+        final JButton button = new JButton();
+        button.setEnabled(false);
+        final ImageIcon icon = IconCache.getIcon(url);
+        button.setIcon(icon);
+        IconCache.addDependent(button, icon);
+        // computed from the placeholder, unless the image is decoded already
+        button.getDisabledIcon();
+        while (icon.getIconWidth() != 24) {
+            Thread.sleep(10);
+        }
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                Icon disabledIcon = button.getDisabledIcon();
+                assertEquals(24, disabledIcon.getIconWidth());
+                BufferedImage painted = new BufferedImage(24, 20, BufferedImage.TYPE_INT_ARGB);
+                Graphics g = painted.getGraphics();
+                disabledIcon.paintIcon(button, g, 0, 0);
+                g.dispose();
+                assertTrue("disabled icon is blank", (painted.getRGB(12, 10) >>> 24) != 0);
+            }
+        });
+    }
+
+    private URL createImage(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        File file = File.createTempFile("iconcache", ".png");
+        files.add(file);
+        ImageIO.write(image, "png", file);
+        return file.toURI().toURL();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IconUtilsTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = File.createTempFile("iconutils", "");
+        assertTrue(directory.delete() && directory.mkdir());
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void prefetchedIconsAreServedFromTheCache() throws Exception {
+        String extension = ".prefetch" + System.nanoTime();
+        File first = createFile("first" + extension);
+        File second = createFile("second" + extension);
+        File program = createFile("program.exe");
+        List<File> files = Arrays.asList(first, second, program, directory);
+        for (File file : files) {
+            assertFalse(IconUtils.isIconCached(file, false));
+        }
+
+        Map<File, Icon> icons = IconUtils.prefetchIcons(files, false).get();
+
+        assertEquals(files.size(), icons.size());
+        for (File file : files) {
+            assertTrue(file.getName(), IconUtils.isIconCached(file, false));
+            assertSame(file.getName(), icons.get(file), IconUtils.getIconForFile(file, false, true));
+        }
+        assertSame(icons.get(first), IconUtils.getIconForExtension(extension, false));
+    }
+
+    @Test
+    public void ownIconsAreLookedUpAgainWhenTheFileIsModified() throws Exception {
+        File program = createFile("program.exe");
+        IconUtils.getIconForFile(program, false, true);
+        assertTrue(IconUtils.isIconCached(program, false));
+
+        assertTrue(program.setLastModified(program.lastModified() - 10000));
+        assertFalse(IconUtils.isIconCached(program, false));
+        IconUtils.getIconForFile(program, false, true);
+        assertTrue(IconUtils.isIconCached(program, false));
+    }
+
+    private File createFile(String name) throws IOException {
+        File file = new File(directory, name);
+        assertTrue(file.createNewFile());
+        return file;
+    }
+}
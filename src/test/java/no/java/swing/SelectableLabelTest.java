@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.font.TextLayout;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SelectableLabelTest {
+
+    @Test
+    public void layoutsAreSharedByPaintingAndSizing() {
+        SelectableLabel label = new SelectableLabel("Some text", false, true);
+        label.setSize(label.getPreferredSize());
+        List<TextLayout> layouts = label.getLayouts(label.getWidth());
+
+        BufferedImage image = new BufferedImage(label.getWidth() * 2, label.getHeight() * 2, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.scale(2, 2);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            label.paint(g);
+        } finally {
+            g.dispose();
+        }
+        label.getPreferredSize();
+
+        assertSame(layouts, label.getLayouts(label.getWidth()));
+    }
+
+    @Test
+    public void multilineTextIsWrappedIntoLines() {
+        SelectableLabel label = new SelectableLabel("first\nsecond", true, true);
+        Insets insets = label.getInsets();
+        int lineHeight = label.getFontMetrics(label.getFont()).getHeight();
+
+        assertEquals(2 * lineHeight + insets.top + insets.bottom, label.getPreferredSize().height);
+    }
+
+    @Test
+    public void textComponentIsDiscardedIfItCanNotGetTheFocus() {
+        SelectableLabel label = new SelectableLabel("Some text", false, true);
+        label.setSize(label.getPreferredSize());
+
+        label.dispatchEvent(new MouseEvent(label, MouseEvent.MOUSE_PRESSED, 0, InputEvent.BUTTON1_MASK, 2, 2, 1, false, MouseEvent.BUTTON1));
+        label.dispatchEvent(new MouseEvent(label, MouseEvent.MOUSE_RELEASED, 0, InputEvent.BUTTON1_MASK, 2, 2, 1, false, MouseEvent.BUTTON1));
+
+        assertEquals(0, label.getComponentCount());
+        assertEquals("Some text", label.getText());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import static org.junit.Assert.*;
+
+public class BinaryResourceCompilerTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws Exception {
+        directory = File.createTempFile("resources", "");
+        assertTrue(directory.delete());
+        assertTrue(new File(directory, "no/java").mkdirs());
+    }
+
+    @After
+    public void deleteDirectory() throws Exception {
+        delete(directory);
+    }
+
+    @Test
+    public void compiledBundlesHoldResolvedValuesForEachLocale() throws Exception {
+        write("no/java/texts.properties", "hello=Hello\nworld=World\ngreeting=${hello} ${world}\nescaped=\\\\${world}\nnothing=${null}\n");
+        write("no/java/texts_no.properties", "hello=Hei\n");
+        assertEquals(2, BinaryResourceCompiler.compile(directory, directory));
+
+        ResourceBundle base = open("no/java/texts.rbin");
+        ResourceMapImpl baseMap = new ResourceMapImpl(base);
+        assertEquals("Hello World", baseMap.getString("greeting"));
+        assertEquals(5, Collections.list(base.getKeys()).size());
+
+        ResourceMapImpl norwegian = new ResourceMapImpl(open("no/java/texts_no.rbin"), baseMap, "no.java.texts", new Locale("no"));
+        assertEquals("Hei World", norwegian.getString("greeting"));
+        assertEquals("${world}", norwegian.getString("escaped"));
+        assertNull(norwegian.getObject("nothing", String.class));
+        assertFalse(norwegian.containsKey("missing"));
+    }
+
+    @Test
+    public void compiledBundlesHoldOnlyTheKeysOfTheirOwnLocale() throws Exception {
+        write("no/java/texts.properties", "hello=Hello\nworld=World\ngreeting=${hello} ${world}\ntitle=${world}!\n");
+        write("no/java/texts_no.properties", "hello=Hei\nfarewell=Ha det, ${world}\n");
+        BinaryResourceCompiler.compile(directory, directory);
+
+        ResourceBundle base = open("no/java/texts.rbin");
+        ResourceBundle norwegian = open("no/java/texts_no.rbin");
+        assertEquals(new HashSet<String>(Arrays.asList("hello", "farewell")), norwegian.keySet());
+        assertFalse(norwegian.containsKey("world"));
+        assertEquals("World!", base.getString("title"));
+        assertEquals("Ha det, World", norwegian.getString("farewell"));
+        // refers to a key the Norwegian locale overrides, so it is left to the runtime chain
+        assertEquals("${hello} ${world}", base.getString("greeting"));
+    }
+
+    @Test
+    public void baseNamesWithUnderscoresAreNotTakenForLocales() throws Exception {
+        write("no/java/button.properties", "label=Button\ntext=${label}\n");
+        write("no/java/button_bar.properties", "label=Bar\n");
+        BinaryResourceCompiler.compile(directory, directory);
+
+        assertEquals("Button", open("no/java/button.rbin").getString("text"));
+        assertEquals("Bar", open("no/java/button_bar.rbin").getString("label"));
+    }
+
+    @Test
+    public void norwegianBundlesFallBackToEachOther() throws Exception {
+        write("no/java/texts.properties", "hello=Hello\n");
+        write("no/java/texts_nb.properties", "hello=Hei\n");
+        write("no/java/texts_no.properties", "farewell=Ha det, ${hello}\n");
+        BinaryResourceCompiler.compile(directory, directory);
+
+        ResourceMapImpl base = new ResourceMapImpl(open("no/java/texts.rbin"));
+        ResourceMapImpl bokmal = new ResourceMapImpl(open("no/java/texts_nb.rbin"), base, "no.java.texts", new Locale("nb"));
+        ResourceMapImpl norwegian = new ResourceMapImpl(open("no/java/texts_no.rbin"), bokmal, "no.java.texts", new Locale("no"));
+        assertEquals("Ha det, Hei", norwegian.getString("farewell"));
+    }
+
+    private ResourceBundle open(String name) throws IOException {
+        return BinaryResourceBundle.open(new File(directory, name).toURI().toURL());
+    }
+
+    private void write(String name, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, name)), "ISO-8859-1");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -66,6 +66,11 @@ public class ColorResourceConverterTest {
 
     }
 
+    @Test
+    public void identicalStringsShareOneInstance() throws Exception {
+        assertSame(converter.convert("12,34,56"), converter.convert("12,34,56"));
+    }
+
     @Test
     public void tryALongNumber() throws Exception {
         Color color = converter.convert("#045863456");
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import org.junit.Test;
+
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import java.awt.Font;
+
+import static org.junit.Assert.*;
+
+public class ConverterRegistryTest {
+    private ConverterRegistry registry = new ConverterRegistry();
+
+    @Test
+    public void convertersServeSupertypesAndInterfaces() throws Exception {
+        IconResourceConverter converter = new IconResourceConverter();
+        registry.register(ImageIcon.class, converter);
+        assertSame(converter, registry.find(ImageIcon.class));
+        assertSame(converter, registry.find(Icon.class));
+        assertNull(registry.find(Font.class));
+    }
+
+    @Test
+    public void registeringReplacesResolvedConverters() throws Exception {
+        assertNull(registry.find(CharSequence.class));
+        StringResourceConverter converter = new StringResourceConverter();
+        registry.register(String.class, converter);
+        assertSame(converter, registry.find(CharSequence.class));
+    }
+
+    @Test
+    public void defaultRegistryConvertsPrimitivesAndFonts() throws Exception {
+        ConverterRegistry defaults = ConverterRegistry.getDefault();
+        assertEquals(Integer.valueOf(42), defaults.find(int.class).convert("42"));
+        assertEquals(Long.valueOf(42), defaults.find(Long.class).convert("42"));
+        assertEquals(Boolean.TRUE, defaults.find(Boolean.class).convert("true"));
+        assertEquals(Font.BOLD, defaults.find(Font.class).convert("Dialog-BOLD-12").getStyle());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.UnknownFormatConversionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FormatTemplateTest {
+
+    @Test
+    public void formatsLikeStringFormat() throws Exception {
+        assertFormat("Hello %s, you have %d new messages", "World", 42);
+        assertFormat("%2$s before %1$s and %<s again", "first", "second");
+        assertFormat("%5.1f%% done%n", 12.34);
+        assertFormat("%-6s|%06d|%x", "ab", 7, 255);
+        assertFormat("no specifiers at all");
+        assertFormat("%s", (Object) null);
+    }
+
+    @Test
+    public void parsedSpecifiersFormatLikeStringFormat() throws Exception {
+        assertFormat("%-8s|%8.2s|%b|%c|%5c", "left", "truncated", "yes", 'x', 65);
+        assertFormat("%d|%+d|% d|%08d|%-6d|%d", 42, 42, 42, -42, 7, new BigInteger("-123456789012345678901"));
+        assertFormat("%x|%X|%#x|%08X|%o|%#o", -1, 255L, (byte) -1, (short) 4095, 8, 8);
+        assertFormat("%f|%.0f|%.2f|%+.2f|%010.3f|%-9.1f|", 1.005, 2.5, -0.001, 0.125f, -3.14159, 1e7);
+        assertFormat("%.3f|%.2f", new BigDecimal("-1.0005"), new BigDecimal("123456789.999"));
+        assertFormat("%e|%,d|%(d|%tY|%h", 12345.678, 1234567, -5, new Date(0), "hash");
+    }
+
+    @Test
+    public void numbersAreLocalized() throws Exception {
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("nb", "NO"));
+            assertFormat("%.2f|%08.1f|%d", 1234.567, -2.25, -17);
+            Locale.setDefault(new Locale("th", "TH", "TH"));
+            assertFormat("%.2f|%05d", 1234.567, 42);
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void nullArgumentsFormatLikeStringFormat() throws Exception {
+        assertFormat("%s, %d and %2$s", (Object[]) null);
+        assertFormat("%s %<s %5b", (Object[]) null);
+        assertFormat("%s and %x", null, null);
+    }
+
+    @Test
+    public void missingArgumentsAreReportedAsWritten() throws Exception {
+        try {
+            FormatTemplate.compile("%s and %2$-5s").format("one");
+            fail();
+        } catch (MissingFormatArgumentException e) {
+            assertEquals("%2$-5s", e.getFormatSpecifier());
+        }
+    }
+
+    @Test
+    public void appendsToTheBuilder() throws Exception {
+        StringBuilder builder = new StringBuilder("Status: ");
+        FormatTemplate.compile("%s of %s").appendTo(builder, 1, 2);
+        assertEquals("Status: 1 of 2", builder.toString());
+    }
+
+    @Test(expected = MissingFormatArgumentException.class)
+    public void missingArgumentsAreReported() throws Exception {
+        FormatTemplate.compile("%s and %s").format("one");
+    }
+
+    @Test(expected = UnknownFormatConversionException.class)
+    public void invalidSpecifiersAreReported() throws Exception {
+        FormatTemplate.compile("100%");
+    }
+
+    private static void assertFormat(String pattern, Object... args) {
+        assertEquals(String.format(pattern, args), FormatTemplate.compile(pattern).format(args));
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResourceBundleReloaderTest {
+
+    @Test
+    public void editedPropertiesFileIsReloadedEvenIfCompiledFileExists() throws Exception {
+        File properties = new File(getClass().getResource("reload/texts.properties").toURI());
+        write(properties, "a=before\n");
+        BinaryResourceCompiler.compile(properties.getParentFile(), properties.getParentFile());
+        File compiled = new File(properties.getParentFile(), "texts." + BinaryResourceBundle.EXTENSION);
+        try {
+            ResourceMap map = ResourceMapLoader.getResourceMap("no.java.swing.resource.reload.texts", Locale.ROOT);
+            assertEquals("before", map.getString("a"));
+            ResourceBundleReloader.checkForChanges();
+
+            write(properties, "a=after\n");
+            assertEquals(true, properties.setLastModified(compiled.lastModified() + 2000));
+            ResourceBundleReloader.checkForChanges();
+
+            assertEquals("after", map.getString("a"));
+        } finally {
+            compiled.delete();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
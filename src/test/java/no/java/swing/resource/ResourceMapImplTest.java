@@ -0,0 +1,155 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import org.junit.Test;
+
+import java.awt.Color;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class ResourceMapImplTest {
+    private ResourceMapImpl resourceMap = new ResourceMapImpl(new TestBundle());
+
+    @Test
+    public void repeatedLookupsReturnTheCachedValue() throws Exception {
+        Color color = resourceMap.getColor("background");
+        assertEquals(Color.WHITE, color);
+        assertSame(color, resourceMap.getColor("background"));
+    }
+
+    @Test
+    public void identicalValuesShareOneInstance() throws Exception {
+        assertSame(resourceMap.getColor("background"), resourceMap.getColor("selection"));
+    }
+
+    @Test
+    public void invalidateDiscardsCachedValues() throws Exception {
+        assertEquals(Color.WHITE, resourceMap.getColor("selection"));
+        resourceMap.reload(new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                return new Object[][]{
+                        {"background", "0,0,0"},
+                        {"selection", "${background}"},
+                };
+            }
+        });
+        assertEquals(Color.WHITE, resourceMap.getColor("selection"));
+        resourceMap.invalidate("background");
+        assertEquals(Color.BLACK, resourceMap.getColor("selection"));
+    }
+
+    @Test
+    public void missingKeysAreNull() throws Exception {
+        assertNull(resourceMap.getColor("missing"));
+        assertNull(resourceMap.getColor("missing"));
+    }
+
+    @Test
+    public void referencesAreResolved() throws Exception {
+        assertEquals("Hello World", resourceMap.getString("greeting"));
+        assertEquals("${world}", resourceMap.getString("escaped"));
+    }
+
+    @Test
+    public void formattedValuesAreAppendedToTheBuilder() throws Exception {
+        StringBuilder builder = new StringBuilder("> ");
+        assertSame(builder, ResourceMaps.appendString(resourceMap, builder, "count", 3, "World"));
+        ResourceMaps.appendString(resourceMap, builder, "missing", 1);
+        assertEquals("> 3 greetings to World", builder.toString());
+    }
+
+    @Test(expected = LookupException.class)
+    public void circularReferencesAreDetected() throws Exception {
+        resourceMap.getString("ping");
+    }
+
+    @Test
+    public void childLocaleSharesInheritedValues() throws Exception {
+        ResourceMapImpl child = new ResourceMapImpl(new ChildBundle(), resourceMap, "test", new Locale("no"));
+        assertSame(resourceMap.getColor("background"), child.getColor("background"));
+        assertEquals("Hei World", child.getString("greeting"));
+        assertEquals("Hello World", resourceMap.getString("greeting"));
+        assertTrue(child.containsKey("place"));
+        assertEquals(resourceMap.keySet().size(), child.keySet().size());
+    }
+
+    @Test
+    public void overridingAnInheritedReferenceInvalidatesItsReferrers() throws Exception {
+        ResourceMapImpl parent = new ResourceMapImpl(new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                return new Object[][]{
+                        {"a", "${b}"},
+                        {"b", "X"},
+                };
+            }
+        });
+        ResourceMapImpl child = new ResourceMapImpl(new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                return new Object[][]{
+                        {"c", "${a}!"},
+                };
+            }
+        }, parent, "test", new Locale("no"));
+        assertEquals("X!", child.getString("c"));
+
+        child.invalidateKeys(child.reload(new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                return new Object[][]{
+                        {"b", "Y"},
+                        {"c", "${a}!"},
+                };
+            }
+        }));
+        assertEquals("Y", child.getString("a"));
+        assertEquals("Y!", child.getString("c"));
+        assertEquals("X", parent.getString("a"));
+    }
+
+    private static class ChildBundle extends ListResourceBundle {
+        @Override
+        protected Object[][] getContents() {
+            return new Object[][]{
+                    {"hello", "Hei"},
+            };
+        }
+    }
+
+    private static class TestBundle extends ListResourceBundle {
+        @Override
+        protected Object[][] getContents() {
+            return new Object[][]{
+                    {"background", "255,255,255"},
+                    {"selection", "${background}"},
+                    {"hello", "Hello"},
+                    {"world", "World"},
+                    {"place", "${world}"},
+                    {"greeting", "${hello} ${place}"},
+                    {"escaped", "\\${world}"},
+                    {"ping", "${pong}"},
+                    {"pong", "${ping}"},
+                    {"count", "%d greetings to %s"},
+            };
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResourceMapLoaderTest {
+    private static final Locale NORWEGIAN = new Locale("no", "NO");
+    private static final Locale BOKMAL = new Locale("nb", "NO");
+
+    @Test
+    public void norwegianFallbackDoesNotDependOnLoadOrder() throws Exception {
+        String name = "no.java.swing.resource.norwegian";
+        assertEquals("nb", ResourceMapLoader.getResourceMap(name, BOKMAL).getString("a"));
+        assertEquals("no", ResourceMapLoader.getResourceMap(name, NORWEGIAN).getString("a"));
+        assertEquals(ResourceBundle.getBundle(name, NORWEGIAN).getString("a"),
+                ResourceMapLoader.getResourceMap(name, NORWEGIAN).getString("a"));
+        assertEquals(ResourceBundle.getBundle(name, BOKMAL).getString("a"),
+                ResourceMapLoader.getResourceMap(name, BOKMAL).getString("a"));
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentNorwegianLoadsDoNotDeadlock() throws Exception {
+        final String name = "no.java.swing.resource.concurrent";
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (final Locale locale : new Locale[]{BOKMAL, NORWEGIAN}) {
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return ResourceMapLoader.getResourceMap(name, locale).getString("a");
+                    }
+                }));
+            }
+            assertEquals("nb", results.get(0).get());
+            assertEquals("no", results.get(1).get());
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentCallersShareOneLoad() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ResourceMap>> results = new ArrayList<Future<ResourceMap>>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(new Callable<ResourceMap>() {
+                    public ResourceMap call() throws Exception {
+                        start.await();
+                        return ResourceMapLoader.getResourceMap("no.java.swing.resource.norwegian", new Locale("nb", "SJ"));
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<ResourceMap> result : results) {
+                assertSame(results.get(0).get(), result.get());
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void preloadReportsEachBundleInOrder() throws Exception {
+        String actions = "no.java.swing.actions";
+        String missing = "no.java.swing.resource.missing";
+        Map<String, Future<Long>> timings = ResourceMapLoader.preload(Arrays.asList(actions, missing), Locale.ROOT);
+
+        assertEquals(Arrays.asList(actions, missing), new ArrayList<String>(timings.keySet()));
+        assertTrue(timings.get(actions).get() >= 0);
+        try {
+            timings.get(missing).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof MissingResourceException);
+        }
+    }
+}
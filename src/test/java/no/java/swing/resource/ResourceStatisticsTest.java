@@ -0,0 +1,69 @@
+/*
+ * Copyright 2011 javaBin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package no.java.swing.resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceStatisticsTest {
+    private final ResourceStatistics statistics = ResourceStatistics.getInstance();
+
+    @Before
+    public void enable() {
+        statistics.reset();
+        statistics.setEnabled(true);
+    }
+
+    @After
+    public void disable() {
+        statistics.setEnabled(false);
+        statistics.reset();
+    }
+
+    @Test
+    public void lookupsMissesAndConversionsAreCounted() throws Exception {
+        ResourceMapImpl map = new ResourceMapImpl(new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                return new Object[][]{{"background", "1,2,3"}};
+            }
+        }, null, "test", new Locale("no"));
+        map.getColor("background");
+        map.getColor("background");
+        map.getColor("missing");
+        assertEquals(Long.valueOf(3), statistics.getLookupCounts().get("test_no"));
+        assertEquals(Long.valueOf(1), statistics.getMissCounts().get("test_no:missing"));
+        assertTrue(statistics.getConversionTimes().containsKey(ColorResourceConverter.class.getName()));
+        assertTrue(statistics.dump().contains("test_no:missing"));
+    }
+
+    @Test
+    public void statisticsAreExportedThroughJmx() throws Exception {
+        ResourceStatistics.registerMBean();
+        ObjectName name = new ObjectName(ResourceStatistics.OBJECT_NAME);
+        assertEquals(Boolean.TRUE, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Enabled"));
+    }
+}